@@ -1,5 +1,32 @@
 #!/bin/bash
 
+# Starts the game with the given arguments, see App.
+#
+# Runs the jar built by "mvn package" when there is one: its manifest holds the classpath of the
+# dependencies copied to target/lib, so nothing has to be resolved. Otherwise runs target/classes with the
+# classpath in $CP, resolved by maven when empty.
+#
+# AGWENST_CDS=1 shares the class data of the jar through an archive, created by the first run after a
+# build (java 13 or later)
+# AGWENST_TIMING=1 reports the time from the launch to the first prompt
+
+JAR=target/agwenst-0.0.1-SNAPSHOT.jar
+ARCHIVE=target/agwenst.jsa
+
+OPTS=()
+test -n "$AGWENST_TIMING" && OPTS+=("-Dagwenst.launchedAt=$(date +%s%3N)")
+
+if [ -f $JAR ]; then
+	if [ -n "$AGWENST_CDS" ]; then
+		if [ $ARCHIVE -nt $JAR ]; then
+			OPTS+=("-XX:SharedArchiveFile=$ARCHIVE")
+		else
+			OPTS+=("-XX:ArchiveClassesAtExit=$ARCHIVE" "-Xlog:cds=off")
+		fi
+	fi
+	exec java "${OPTS[@]}" -jar $JAR "$@"
+fi
+
 test -z $CP && export CP=`mvn dependency:build-classpath | grep '^/'`
 
-java -cp $CP:target/classes org.mofleury.agwenst.App
+exec java "${OPTS[@]}" -cp $CP:target/classes org.mofleury.agwenst.App "$@"
@@ -0,0 +1,59 @@
+package org.mofleury.agwenst.engine;
+
+import static java.util.Arrays.asList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import org.mofleury.agwenst.domain.still.Card;
+import org.mofleury.agwenst.domain.still.CardCatalog;
+import org.mofleury.agwenst.domain.still.CardType;
+import org.mofleury.agwenst.domain.still.Effect;
+import org.mofleury.agwenst.domain.still.Player;
+
+/**
+ * Builds the sequence of cards needed to fill a board with a given number of units per row and of
+ * special cards.
+ */
+class BoardFixture {
+
+	static final List<Player> PLAYERS = asList(new Player("Jack"), new Player("Johnes"));
+
+	static List<Card> cards(int unitsPerRow, int specialCount, long seed) {
+		Random rand = new Random(seed);
+		List<Card> units = new ArrayList<>();
+		for (int seat = 0; seat < PLAYERS.size(); seat++) {
+			for (int r = 1; r <= Game.ROW_COUNT; r++) {
+				for (int i = 0; i < unitsPerRow; i++) {
+					int value = 1 + rand.nextInt(10);
+					units.add(CardCatalog.getInstance()
+							.card(CardType.UNIT, "c" + value, value, r, Optional.empty()));
+				}
+			}
+		}
+
+		// interleave specials among units so that plays see a growing list of effects
+		List<Card> sequence = new ArrayList<>(units);
+		for (int i = 0; i < specialCount; i++) {
+			int r = 1 + rand.nextInt(Game.ROW_COUNT);
+			sequence.add(rand.nextInt(sequence.size() + 1),
+					CardCatalog.getInstance()
+							.card(CardType.SPECIAL, "s" + r, 0, r, Optional.of(Effect.SAP)));
+		}
+		return sequence;
+	}
+
+	/**
+	 * plays every card of the sequence, alternating seats as long as possible
+	 */
+	static Round fill(List<Card> sequence) {
+		Round round = new Round(PLAYERS, 0);
+		for (int i = 0; i < sequence.size(); i++) {
+			round.playCard(sequence.get(i));
+			round.swapPlayerIfPossible();
+		}
+		return round;
+	}
+}
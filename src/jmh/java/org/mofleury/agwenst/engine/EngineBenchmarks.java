@@ -0,0 +1,23 @@
+package org.mofleury.agwenst.engine;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of benchmarks.jar: runs the JMH benchmarks selected on the command line (all by default),
+ * always with the GC profiler so that allocation rates are reported next to timings.
+ */
+public class EngineBenchmarks {
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+
+		new Runner(new OptionsBuilder().parent(commandLine)
+				.addProfiler(GCProfiler.class)
+				.build()).run();
+	}
+}
@@ -0,0 +1,59 @@
+package org.mofleury.agwenst.engine;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.mofleury.agwenst.DeckBuilder;
+import org.mofleury.agwenst.domain.still.InitialDeck;
+import org.mofleury.agwenst.domain.still.Player;
+import org.mofleury.agwenst.simulation.GameOutcome;
+import org.mofleury.agwenst.simulation.RandomPolicy;
+import org.mofleury.agwenst.simulation.Simulator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameBenchmark {
+
+	private Map<Player, InitialDeck> initialDecks;
+
+	private Simulator simulator;
+
+	private long seed;
+
+	@Setup
+	public void setup() {
+		InitialDeck deck = new DeckBuilder().balancedDeck();
+		initialDecks = new HashMap<>();
+		BoardFixture.PLAYERS.forEach(p -> initialDecks.put(p, deck));
+
+		simulator = new Simulator(new RandomPolicy(), new RandomPolicy(), deck, deck, 1);
+	}
+
+	/**
+	 * shuffles and deals both decks, then opens the first round
+	 */
+	@Benchmark
+	public Game newGame() {
+		return new Game(seed++, BoardFixture.PLAYERS, initialDecks);
+	}
+
+	@Benchmark
+	public GameOutcome randomPlayout() {
+		return simulator.playGame(seed++);
+	}
+}
@@ -0,0 +1,73 @@
+package org.mofleury.agwenst.engine;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.mofleury.agwenst.domain.still.Card;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoundBenchmark {
+
+	@Param({ "1", "4", "12" })
+	private int unitsPerRow;
+
+	@Param({ "0", "3", "9" })
+	private int specialCount;
+
+	private List<Card> sequence;
+
+	private Round filled;
+
+	@Setup
+	public void setup() {
+		sequence = BoardFixture.cards(unitsPerRow, specialCount, 42);
+		filled = BoardFixture.fill(sequence);
+	}
+
+	/**
+	 * plays the whole sequence on a fresh round, so the result is the cost of a full board
+	 */
+	@Benchmark
+	public Round playCardSequence() {
+		return BoardFixture.fill(sequence);
+	}
+
+	@Benchmark
+	public Round adjustCardStrengths() {
+		filled.adjustCardStrengths();
+		return filled;
+	}
+
+	@Benchmark
+	public void computeScores(Blackhole bh) {
+		bh.consume(filled.getScore(0));
+		bh.consume(filled.getScore(1));
+	}
+
+	@Benchmark
+	public Object computeScoresMap() {
+		return filled.computeScores();
+	}
+
+	@Benchmark
+	public int findWinnerSeat() {
+		return filled.findWinnerSeat();
+	}
+}
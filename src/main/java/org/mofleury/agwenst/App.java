@@ -2,41 +2,153 @@ package org.mofleury.agwenst;
 
 import static java.util.Arrays.asList;
 import static java.util.stream.Collectors.toMap;
-import static java.util.stream.Stream.of;
 
 import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
+import org.mofleury.agwenst.ai.MctsPolicy;
+import org.mofleury.agwenst.console.BatchSession;
 import org.mofleury.agwenst.console.ConsoleUI;
 import org.mofleury.agwenst.domain.still.InitialDeck;
 import org.mofleury.agwenst.domain.still.Player;
 import org.mofleury.agwenst.engine.Game;
+import org.mofleury.agwenst.engine.GameState;
+import org.mofleury.agwenst.events.EventConsumer;
+import org.mofleury.agwenst.persistence.GameJournal;
+import org.mofleury.agwenst.persistence.JournalReplay;
+import org.mofleury.agwenst.server.GameServer;
+import org.mofleury.agwenst.server.LoadClient;
+import org.mofleury.agwenst.simulation.DeckOptimizer;
+import org.mofleury.agwenst.simulation.Simulator;
+import org.mofleury.agwenst.simulation.Tournament;
+import org.mofleury.agwenst.spectator.SpectatorClient;
+import org.mofleury.agwenst.spectator.SpectatorFeed;
+import org.mofleury.agwenst.spectator.SpectatorHub;
 
 /**
  * Hello world!
  *
  */
 public class App {
-	public static void main(String[] args) throws IOException {
+	public static void main(String[] args) throws Exception {
 
-		Player player1 = new Player("Jack");
-		Player player2 = new Player("Johnes");
+		if (args.length > 0 && args[0].equals("simulate")) {
+			Simulator.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
 
-		Game game = initSampleGame(player1, player2);
+		if (args.length > 0 && args[0].equals("tournament")) {
+			Tournament.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+
+		if (args.length > 0 && args[0].equals("optimize")) {
+			DeckOptimizer.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+
+		if (args.length > 0 && args[0].equals("replay")) {
+			JournalReplay.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+
+		if (args.length > 0 && args[0].equals("batch")) {
+			BatchSession.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+
+		if (args.length > 0 && args[0].equals("server")) {
+			GameServer.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+
+		if (args.length > 0 && args[0].equals("spectate")) {
+			SpectatorClient.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+
+		if (args.length > 0 && args[0].equals("load")) {
+			LoadClient.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+
+		long seed = System.currentTimeMillis();
+		List<Player> players = asList(new Player("Jack"), new Player("Johnes"));
+		Map<Player, InitialDeck> initialDecks = sampleDecks(players);
+
+		Game game = new Game(seed, players, initialDecks);
+		game.setStatePublished(true);
 
 		ConsoleUI ui = new ConsoleUI();
+		// the game of the console once started, which may load another one
+		Supplier<GameState> states = () -> {
+			GameState played = ui.getState();
+			return played != null ? played : game.getState();
+		};
+
+		try (GameJournal journal = openJournal(seed, players, initialDecks);
+				SpectatorHub hub = openSpectatorHub();
+				EventConsumer recording = journal == null ? null : ui.record(journal);
+				EventConsumer broadcasting = hub == null ? null
+						: ui.follow(new SpectatorFeed(states, hub, 32), "spectators")) {
+
+			if (args.length > 0 && args[0].equals("ai")) {
+				// ai [thinking time in ms] [threads]: the second seat is played by the computer
+				long budgetMillis = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+				int threads = args.length > 2 ? Integer.parseInt(args[2])
+						: Runtime.getRuntime()
+								.availableProcessors();
+				try (MctsPolicy ai = new MctsPolicy(threads, budgetMillis)) {
+					ui.setComputerPlayer(1, ai);
+					ui.run(game);
+				}
+				return;
+			}
 
-		ui.run(game);
+			ui.run(game);
+		}
 
 	}
 
-	private static Game initSampleGame(Player player1, Player player2) throws IOException {
+	private static Map<Player, InitialDeck> sampleDecks(List<Player> players) {
 
 		InitialDeck defaultDeck = new DeckBuilder().balancedDeck();
 
-		Map<Player, InitialDeck> initialDecks = of(player1, player2).collect(toMap(p -> p, p -> defaultDeck));
+		return players.stream()
+				.collect(toMap(p -> p, p -> defaultDeck));
 
-		return new Game(System.currentTimeMillis(), asList(player1, player2), initialDecks);
+	}
+
+	/**
+	 * @return the journal of the game, written to the file named by the agwenst.journal system property, null
+	 *         when it is not set
+	 */
+	private static GameJournal openJournal(long seed, List<Player> players, Map<Player, InitialDeck> initialDecks)
+			throws IOException {
+		String path = System.getProperty("agwenst.journal");
+		if (path == null) {
+			return null;
+		}
+		return GameJournal.create(Paths.get(path), seed, players, initialDecks);
+	}
 
+	/**
+	 * @return a hub for the spectators of the game, listening to the port given by the agwenst.spectators
+	 *         system property, null when it is not set, on the loopback interface unless the agwenst.bind
+	 *         system property names another address
+	 */
+	private static SpectatorHub openSpectatorHub() throws IOException {
+		String port = System.getProperty("agwenst.spectators");
+		if (port == null) {
+			return null;
+		}
+		String bind = System.getProperty("agwenst.bind");
+		InetAddress address = bind == null ? InetAddress.getLoopbackAddress() : InetAddress.getByName(bind);
+		return new SpectatorHub(address, Integer.parseInt(port));
 	}
 }
@@ -9,26 +9,29 @@ import java.util.List;
 import java.util.Optional;
 
 import org.mofleury.agwenst.domain.still.Card;
+import org.mofleury.agwenst.domain.still.CardCatalog;
 import org.mofleury.agwenst.domain.still.CardType;
 import org.mofleury.agwenst.domain.still.Effect;
 import org.mofleury.agwenst.domain.still.InitialDeck;
 
 public class DeckBuilder {
 
+	private final CardCatalog catalog = CardCatalog.getInstance();
+
 	public InitialDeck simpleDeck(int min, int max) {
-		return new InitialDeck(range(min, max + 1).mapToObj(i -> new Card(UNIT, "c" + i, i, 1, Optional.empty()))
+		return new InitialDeck(range(min, max + 1).mapToObj(i -> catalog.card(UNIT, "c" + i, i, 1, Optional.empty()))
 				.collect(toList()));
 	}
 
 	public InitialDeck balancedDeck() {
 		List<Card> cards = new ArrayList<>();
 		range(1, 4).forEach(r -> {
-			cards.add(new Card(CardType.SPECIAL, "s" + r, 0, r, Optional.of(Effect.SAP)));
-			range(1, 4).forEach(i -> cards.add(new Card(UNIT, "c1", 1, r, Optional.empty())));
-			range(1, 3).forEach(i -> cards.add(new Card(UNIT, "c2", 2, r, Optional.empty())));
-			range(1, 2).forEach(i -> cards.add(new Card(UNIT, "c3", 3, r, Optional.empty())));
-			range(1, 2).forEach(i -> cards.add(new Card(UNIT, "c5", 5, r, Optional.empty())));
-			range(1, 1).forEach(i -> cards.add(new Card(UNIT, "c8", 8, r, Optional.empty())));
+			cards.add(catalog.card(CardType.SPECIAL, "s" + r, 0, r, Optional.of(Effect.SAP)));
+			range(1, 4).forEach(i -> cards.add(catalog.card(UNIT, "c1", 1, r, Optional.empty())));
+			range(1, 3).forEach(i -> cards.add(catalog.card(UNIT, "c2", 2, r, Optional.empty())));
+			range(1, 2).forEach(i -> cards.add(catalog.card(UNIT, "c3", 3, r, Optional.empty())));
+			range(1, 2).forEach(i -> cards.add(catalog.card(UNIT, "c5", 5, r, Optional.empty())));
+			range(1, 1).forEach(i -> cards.add(catalog.card(UNIT, "c8", 8, r, Optional.empty())));
 		});
 
 		return new InitialDeck(cards);
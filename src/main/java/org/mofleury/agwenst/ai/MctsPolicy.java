@@ -0,0 +1,253 @@
+package org.mofleury.agwenst.ai;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.mofleury.agwenst.domain.still.Card;
+import org.mofleury.agwenst.engine.Game;
+import org.mofleury.agwenst.engine.GameState;
+import org.mofleury.agwenst.simulation.PlayerPolicy;
+import org.mofleury.agwenst.simulation.RandomPolicy;
+
+/**
+ * Monte Carlo Tree Search opponent using root parallelization: every worker thread searches its own tree
+ * until the move time budget expires, and root visit counts are summed to pick the move.
+ * <p>
+ * The opponent hand is hidden, so each worker searches a different determinization of it, drawn from the
+ * cards the opponent may hold (its hand and deck). Workers branch their determinization from a snapshot of the
+ * game taken when the search starts, see {@link Game#snapshot()}, and never read the game itself.
+ * <p>
+ * Iterations play and then undo their moves on the determinized game, so the tree is explored in place.
+ * Node statistics are also published in a {@link TranspositionTable} keyed by the position as seen by the
+ * searching seat, so that new nodes start from what any thread learned about the same position, whatever
+ * the move order that reached it. Those statistics only serve as a prior for the selection: a tree publishes
+ * and votes with the playouts it ran itself.
+ */
+public class MctsPolicy implements PlayerPolicy, AutoCloseable {
+
+	private static final double EXPLORATION = Math.sqrt(2);
+
+	private final int threads;
+	private final long budgetNanos;
+
+	private final ExecutorService executor;
+
+	private final TranspositionTable table;
+
+	private final PlayerPolicy playoutPolicy = new RandomPolicy();
+
+	public MctsPolicy(int threads, long budgetMillis) {
+		this(threads, budgetMillis, new TranspositionTable(1 << 18));
+	}
+
+	public MctsPolicy(int threads, long budgetMillis, TranspositionTable table) {
+		this.threads = threads;
+		this.table = table;
+		this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+		this.executor = Executors.newFixedThreadPool(threads, r -> {
+			Thread t = new Thread(r, "mcts-worker");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	@Override
+	public int chooseMove(Game game, Random random) {
+		int[] rootMoves = legalMoves(game);
+		if (rootMoves.length == 1) {
+			return rootMoves[0];
+		}
+
+		GameState snapshot = game.snapshot();
+		long deadline = System.nanoTime() + budgetNanos;
+		List<Callable<int[]>> searches = new ArrayList<>();
+		for (int i = 0; i < threads; i++) {
+			long seed = random.nextLong();
+			searches.add(() -> search(snapshot, rootMoves, deadline, new Random(seed)));
+		}
+
+		int[] visits = new int[rootMoves.length];
+		try {
+			for (Future<int[]> f : executor.invokeAll(searches)) {
+				int[] treeVisits = f.get();
+				for (int i = 0; i < visits.length; i++) {
+					visits[i] += treeVisits[i];
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread()
+					.interrupt();
+			throw new IllegalStateException("Interrupted while searching", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Search failed", e.getCause());
+		}
+
+		int best = 0;
+		for (int i = 1; i < visits.length; i++) {
+			if (visits[i] > visits[best]) {
+				best = i;
+			}
+		}
+		return rootMoves[best];
+	}
+
+	private int[] search(GameState snapshot, int[] rootMoves, long deadline, Random random) {
+		int seat = snapshot.getCurrentSeat();
+		Game determinization = determinize(snapshot, seat, random);
+		Node root = new Node(null, Game.PASS, -1, 0, rootMoves.clone());
+
+		Game state = determinization;
+		do {
+			int historySize = state.getHistorySize();
+			Node node = root;
+
+			// selection
+			while (node.untriedCount == 0 && !node.children.isEmpty()) {
+				node = node.select();
+				state.applyMove(node.move);
+			}
+
+			// expansion
+			if (node.untriedCount > 0 && !state.gameOver()) {
+				int move = node.takeUntried(random.nextInt(node.untriedCount));
+				int mover = state.getRound()
+						.getCurrentSeat();
+				state.applyMove(move);
+				Node child = new Node(node, move, mover, state.getObservedHash(seat), legalMoves(state));
+				child.initialize(table.probe(child.hash));
+				node.children.add(child);
+				node = child;
+			}
+
+			// playout
+			while (!state.gameOver()) {
+				state.applyMove(playoutPolicy.chooseMove(state, random));
+			}
+
+			// backpropagation
+			int winner = state.getWinnerSeat();
+			for (; node != root; node = node.parent) {
+				node.visits++;
+				node.wins += winner == node.seat ? 1 : (winner < 0 ? 0.5 : 0);
+				table.store(node.hash, node.visits, node.winsForSeat0());
+			}
+			root.visits++;
+
+			// back to the searched position
+			while (state.getHistorySize() > historySize) {
+				state.undo();
+			}
+		} while (System.nanoTime() < deadline);
+
+		int[] visits = new int[rootMoves.length];
+		for (Node child : root.children) {
+			for (int i = 0; i < rootMoves.length; i++) {
+				if (rootMoves[i] == child.move) {
+					visits[i] = child.visits;
+				}
+			}
+		}
+		return visits;
+	}
+
+	private Game determinize(GameState snapshot, int seat, Random random) {
+		Game copy = Game.branch(snapshot);
+		copy.setStatePublished(false);
+		int opponent = 1 - seat;
+
+		List<Card> unknown = new ArrayList<>(copy.getHand(opponent)
+				.getCards());
+		unknown.addAll(copy.getDeck(opponent)
+				.getCards());
+		Collections.shuffle(unknown, random);
+
+		copy.redeal(opponent, unknown);
+		return copy;
+	}
+
+	/**
+	 * @return the legal moves of the current player, none once the game is over
+	 */
+	static int[] legalMoves(Game game) {
+		int[] moves = new int[game.maxMoveCount()];
+		int count = game.generateMoves(moves);
+		return count == moves.length ? moves : Arrays.copyOf(moves, count);
+	}
+
+	@Override
+	public void close() {
+		executor.shutdownNow();
+	}
+
+	private static class Node {
+		private final Node parent;
+		private final int move;
+		// seat that played the move leading to this node
+		private final int seat;
+		private final long hash;
+
+		// moves not expanded yet, in the first untriedCount entries
+		private final int[] untried;
+		private int untriedCount;
+		private final List<Node> children = new ArrayList<>();
+
+		// playouts run through this node by this tree
+		private int visits;
+		private double wins;
+		// statistics found in the table when the node was created
+		private int priorVisits;
+		private double priorWins;
+
+		Node(Node parent, int move, int seat, long hash, int[] untried) {
+			this.parent = parent;
+			this.move = move;
+			this.seat = seat;
+			this.hash = hash;
+			this.untried = untried;
+			this.untriedCount = untried.length;
+		}
+
+		int takeUntried(int index) {
+			int move = untried[index];
+			untried[index] = untried[--untriedCount];
+			return move;
+		}
+
+		void initialize(long data) {
+			if (data != TranspositionTable.MISS) {
+				priorVisits = TranspositionTable.visits(data);
+				double winsForSeat0 = TranspositionTable.winsForSeat0(data);
+				priorWins = seat == 0 ? winsForSeat0 : priorVisits - winsForSeat0;
+			}
+		}
+
+		double winsForSeat0() {
+			return seat == 0 ? wins : visits - wins;
+		}
+
+		Node select() {
+			double logVisits = Math.log(visits + priorVisits);
+			Node best = null;
+			double bestScore = Double.NEGATIVE_INFINITY;
+			for (Node child : children) {
+				int childVisits = child.visits + child.priorVisits;
+				double score = (child.wins + child.priorWins) / childVisits
+						+ EXPLORATION * Math.sqrt(logVisits / childVisits);
+				if (score > bestScore) {
+					best = child;
+					bestScore = score;
+				}
+			}
+			return best;
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package org.mofleury.agwenst.ai;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed size table of search statistics keyed by position hash, shared without locks between search
+ * threads.
+ * <p>
+ * Entries are stored as two longs, <code>hash ^ data</code> and <code>data</code>, so that an entry torn by
+ * concurrent writers fails the hash check on read and is treated as a miss. Slots are grouped in buckets of
+ * two: the first one only gets replaced by entries with at least as many visits, the second one always
+ * gets replaced, so well explored positions survive while recent ones still get a place.
+ * <p>
+ * Data packs the visit count in the high 32 bits and the number of half wins, from the point of view of
+ * seat 0, in the low 32 bits.
+ */
+public class TranspositionTable {
+
+	public static final long MISS = -1;
+
+	private final AtomicLongArray slots;
+	private final int bucketMask;
+
+	/**
+	 * @param capacity
+	 *            number of entries, rounded up to a power of two
+	 */
+	public TranspositionTable(int capacity) {
+		int entries = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		slots = new AtomicLongArray(entries * 2);
+		bucketMask = entries / 2 - 1;
+	}
+
+	public static long pack(int visits, double winsForSeat0) {
+		return (long) visits << 32 | (int) Math.round(winsForSeat0 * 2) & 0xffffffffL;
+	}
+
+	public static int visits(long data) {
+		return (int) (data >>> 32);
+	}
+
+	public static double winsForSeat0(long data) {
+		return (int) data / 2.0;
+	}
+
+	/**
+	 * @return the packed data stored for the hash, or {@link #MISS}
+	 */
+	public long probe(long hash) {
+		int first = bucket(hash);
+		for (int slot = first; slot < first + 4; slot += 2) {
+			long data = slots.get(slot + 1);
+			if ((slots.get(slot) ^ data) == hash) {
+				return data;
+			}
+		}
+		return MISS;
+	}
+
+	public void store(long hash, int visits, double winsForSeat0) {
+		long data = pack(visits, winsForSeat0);
+		int first = bucket(hash);
+		int second = first + 2;
+
+		int target;
+		if ((slots.get(first) ^ slots.get(first + 1)) == hash) {
+			target = first;
+		} else if ((slots.get(second) ^ slots.get(second + 1)) == hash) {
+			target = second;
+		} else if (visits >= visits(slots.get(first + 1))) {
+			target = first;
+		} else {
+			target = second;
+		}
+
+		slots.set(target + 1, data);
+		slots.set(target, hash ^ data);
+	}
+
+	public void clear() {
+		for (int i = 0; i < slots.length(); i++) {
+			slots.set(i, 0);
+		}
+	}
+
+	private int bucket(long hash) {
+		return ((int) (hash ^ hash >>> 32) & bucketMask) * 4;
+	}
+}
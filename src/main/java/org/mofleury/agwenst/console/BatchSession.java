@@ -0,0 +1,111 @@
+package org.mofleury.agwenst.console;
+
+import static java.util.Arrays.asList;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.mofleury.agwenst.DeckBuilder;
+import org.mofleury.agwenst.domain.still.InitialDeck;
+import org.mofleury.agwenst.domain.still.Player;
+import org.mofleury.agwenst.engine.Game;
+
+/**
+ * Plays scripted console commands read from a file or a pipe, without jline. Games are dealt from
+ * consecutive seeds, a new one as soon as the previous is complete, so that the transcript of a script is
+ * reproducible.
+ */
+public class BatchSession {
+
+	private final List<Player> players = asList(new Player("Jack"), new Player("Johnes"));
+	private final Map<Player, InitialDeck> initialDecks = new HashMap<>();
+
+	private final ConsoleUI ui;
+	private long seed;
+
+	public BatchSession(ConsoleOutput out, long seed) {
+		InitialDeck deck = new DeckBuilder().balancedDeck();
+		players.forEach(p -> initialDecks.put(p, deck));
+
+		this.ui = new ConsoleUI(out, 64);
+		ui.setFilesAllowed(true);
+		this.seed = seed;
+	}
+
+	/**
+	 * Executes every line of the input; the session ends with the input or an exit command.
+	 *
+	 * @return the number of lines executed
+	 */
+	public long run(BufferedReader in) throws IOException {
+		ui.start(newGame());
+
+		long lines = 0;
+		String line;
+		FirstPrompt.reached();
+		while ((line = in.readLine()) != null) {
+			lines++;
+			if (!ui.execute(line)) {
+				if (!ui.isGameOver()) {
+					break;
+				}
+				ui.start(newGame());
+			}
+		}
+		ui.getOut()
+				.flush();
+		return lines;
+	}
+
+	private Game newGame() {
+		return new Game(seed++, players, initialDecks);
+	}
+
+	/**
+	 * batch [file, - for the standard input] [seed] [quiet]: the transcript goes to the standard output, the
+	 * throughput to the standard error
+	 */
+	public static void main(String[] args) throws IOException {
+		String file = args.length > 0 ? args[0] : "-";
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 0;
+		boolean quiet = args.length > 2 && args[2].equals("quiet");
+
+		Writer writer = quiet ? new Writer() {
+			@Override
+			public void write(char[] cbuf, int off, int len) {
+			}
+
+			@Override
+			public void write(String str) {
+			}
+
+			@Override
+			public void flush() {
+			}
+
+			@Override
+			public void close() {
+			}
+		} : new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+
+		try (BufferedReader in = file.equals("-")
+				? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), 1 << 16)
+				: Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+			long start = System.nanoTime();
+			long lines = new BatchSession(new StreamOutput(writer), seed).run(in);
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.err.println(lines + " commands in " + seconds + " s, " + (long) (lines / seconds)
+					+ " commands/s");
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package org.mofleury.agwenst.console;
+
+/**
+ * Accumulates output in memory, for sessions that are not attached to a terminal. Clearing the screen is
+ * ignored.
+ */
+public class BufferOutput implements ConsoleOutput {
+
+	private final StringBuilder buffer = new StringBuilder();
+
+	@Override
+	public void print(String s) {
+		buffer.append(s);
+	}
+
+	@Override
+	public void println(String s) {
+		buffer.append(s)
+				.append('\n');
+	}
+
+	@Override
+	public void clearScreen() {
+	}
+
+	@Override
+	public void flush() {
+	}
+
+	public boolean isEmpty() {
+		return buffer.length() == 0;
+	}
+
+	/**
+	 * @return the output accumulated so far, which is then discarded
+	 */
+	public String take() {
+		String content = buffer.toString();
+		buffer.setLength(0);
+		return content;
+	}
+}
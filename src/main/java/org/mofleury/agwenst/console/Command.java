@@ -1,9 +1,9 @@
 package org.mofleury.agwenst.console;
 
-import java.io.IOException;
-import java.util.Optional;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
-import jline.console.ConsoleReader;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 
@@ -13,7 +13,8 @@ public enum Command {
 
 	HELP("help", "", "Displays available commands", 0) {
 		@Override
-		public void doExecute(ConsoleReader console, ConsoleUI ui, String[] arguments) throws IOException {
+		void doExecute(ConsoleUI ui, String[] arguments) {
+			ConsoleOutput console = ui.getOut();
 			console.println("available commands:");
 			for (Command c : values()) {
 				console.print("\t");
@@ -27,81 +28,132 @@ public enum Command {
 	},
 	DIPLAY_FIELD("field", "", "Displays game field", 0) {
 		@Override
-		public void doExecute(ConsoleReader console, ConsoleUI ui, String[] arguments) throws IOException {
+		void doExecute(ConsoleUI ui, String[] arguments) {
 			ui.displayField();
 		}
 	},
 	DISPLAY_HAND("hand", "", "Displays your hand", 0) {
 		@Override
-		public void doExecute(ConsoleReader console, ConsoleUI ui, String[] arguments) throws IOException {
+		void doExecute(ConsoleUI ui, String[] arguments) {
 			ui.displayHand();
 		}
 	},
 	PLAY_CARD("play", "<card index>", "Plays a card", 1) {
 
 		@Override
-		public void doExecute(ConsoleReader console, ConsoleUI ui, String[] arguments) throws IOException {
-
-			int cardIndex = Integer.valueOf(arguments[0]);
+		void doExecute(ConsoleUI ui, String[] arguments) {
 
 			try {
-				ui.playCard(cardIndex);
-			} catch (IndexOutOfBoundsException e) {
-				console.println("invalid row or card id");
+				ui.playCard(Integer.parseInt(arguments[0]));
+			} catch (IndexOutOfBoundsException | NumberFormatException e) {
+				ui.getOut()
+						.println("invalid row or card id");
 			}
 		}
 	},
 	PASS("pass", "", "Pass for this round", 0) {
 		@Override
-		void doExecute(ConsoleReader console, ConsoleUI ui, String[] arguments) throws IOException {
+		void doExecute(ConsoleUI ui, String[] arguments) {
 			ui.pass();
 		}
 	},
+	UNDO("undo", "", "Takes back the last move", 0) {
+		@Override
+		void doExecute(ConsoleUI ui, String[] arguments) {
+			ui.undo();
+		}
+	},
+	SAVE("save", "<file>", "Saves the game", 1) {
+		@Override
+		void doExecute(ConsoleUI ui, String[] arguments) {
+			ui.save(arguments[0]);
+		}
+	},
+	LOAD("load", "<file>", "Loads a saved game", 1) {
+		@Override
+		void doExecute(ConsoleUI ui, String[] arguments) {
+			ui.load(arguments[0]);
+		}
+	},
 	STATUS("status", "", "Displays global status", 0) {
 		@Override
-		public void doExecute(ConsoleReader console, ConsoleUI ui, String[] arguments) throws IOException {
+		void doExecute(ConsoleUI ui, String[] arguments) {
 			ui.displayStatus();
 		}
 	},
+	METRICS("metrics", "", "Displays engine metrics", 0) {
+		@Override
+		void doExecute(ConsoleUI ui, String[] arguments) {
+			ui.displayMetrics();
+		}
+	},
 	EXIT("exit", "", "Exits the game", 0) {
 		@Override
-		public void doExecute(ConsoleReader console, ConsoleUI ui, String[] arguments) throws IOException {
+		void doExecute(ConsoleUI ui, String[] arguments) {
 			ui.quit();
 		}
 	};
 
+	private static final Map<String, Command> BY_NAME = new HashMap<>();
+
+	static {
+		for (Command c : values()) {
+			BY_NAME.put(c.getName(), c);
+		}
+	}
+
+	private static final String[] NO_ARGUMENTS = {};
+
 	private final String name;
 	private final String usagePostfix;
 	private final String description;
 	private final int argCount;
 
-	abstract void doExecute(ConsoleReader console, ConsoleUI ui, String[] arguments) throws IOException;
+	abstract void doExecute(ConsoleUI ui, String[] arguments);
 
-	public void execute(ConsoleReader console, ConsoleUI ui, String input) throws IOException {
-		doExecute(console, ui, extractArguments(input));
+	/**
+	 * Parses the input once and executes the command it names.
+	 *
+	 * @return false if the input does not name a command with the right number of arguments
+	 */
+	public static boolean dispatch(ConsoleUI ui, String input) {
+		String[] words = split(input);
+		if (words.length == 0) {
+			return false;
+		}
+		Command c = BY_NAME.get(words[0]);
+		if (c == null || words.length - 1 != c.getArgCount()) {
+			return false;
+		}
+		c.doExecute(ui, words.length == 1 ? NO_ARGUMENTS : Arrays.copyOfRange(words, 1, words.length));
+		return true;
 	}
 
-	public static Optional<Command> forInput(String input) {
-		for (Command c : values()) {
-			if (input.startsWith(c.getName())) {
-				String[] arguments = extractArguments(input);
-				if (arguments.length == c.getArgCount()) {
-					return Optional.of(c);
-				}
+	/**
+	 * @return the whitespace separated words of the input
+	 */
+	private static String[] split(String input) {
+		int count = 0;
+		int length = input.length();
+		for (int i = 0; i < length; i++) {
+			if (!Character.isWhitespace(input.charAt(i)) && (i == 0 || Character.isWhitespace(input.charAt(i - 1)))) {
+				count++;
 			}
 		}
-		return Optional.empty();
-	}
-
-	public static String[] extractArguments(String input) {
 
-		int spaceIndex = input.indexOf(' ');
-		if (spaceIndex > 0) {
-			String remaining = input.substring(spaceIndex);
-			return remaining.trim()
-					.split("\\s+");
+		String[] words = new String[count];
+		int w = 0;
+		int i = 0;
+		while (w < count) {
+			while (Character.isWhitespace(input.charAt(i))) {
+				i++;
+			}
+			int start = i;
+			while (i < length && !Character.isWhitespace(input.charAt(i))) {
+				i++;
+			}
+			words[w++] = input.substring(start, i);
 		}
-		return new String[] {};
-
+		return words;
 	}
 }
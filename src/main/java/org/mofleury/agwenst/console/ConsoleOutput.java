@@ -0,0 +1,33 @@
+package org.mofleury.agwenst.console;
+
+/**
+ * Where the console user interface writes, a terminal or a buffer for remote sessions.
+ */
+public interface ConsoleOutput {
+
+	void print(String s);
+
+	void println(String s);
+
+	default void println() {
+		println("");
+	}
+
+	void clearScreen();
+
+	void flush();
+
+	/**
+	 * @return true if the output understands ANSI cursor addressing
+	 */
+	default boolean isAnsi() {
+		return false;
+	}
+
+	/**
+	 * @return the number of lines of the screen, only meaningful for ANSI outputs
+	 */
+	default int getHeight() {
+		return Integer.MAX_VALUE;
+	}
+}
@@ -1,146 +1,304 @@
 package org.mofleury.agwenst.console;
 
-import static java.util.stream.Collectors.joining;
-import static java.util.stream.Collectors.toList;
-import static java.util.stream.IntStream.iterate;
-
 import java.io.IOException;
-import java.util.Arrays;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.Map;
-import java.util.Optional;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
 
-import org.mofleury.agwenst.domain.live.Row;
+import org.mofleury.agwenst.domain.live.EngagedCard;
+import org.mofleury.agwenst.domain.live.Hand;
 import org.mofleury.agwenst.domain.still.Card;
+import org.mofleury.agwenst.domain.still.CardCatalog;
 import org.mofleury.agwenst.domain.still.Player;
 import org.mofleury.agwenst.engine.Game;
-
-import jline.console.ConsoleReader;
-import jline.console.completer.StringsCompleter;
-import lombok.RequiredArgsConstructor;
+import org.mofleury.agwenst.engine.GameState;
+import org.mofleury.agwenst.engine.Round;
+import org.mofleury.agwenst.events.EventConsumer;
+import org.mofleury.agwenst.events.EventRing;
+import org.mofleury.agwenst.events.GameEvent;
+import org.mofleury.agwenst.events.GameEventHandler;
+import org.mofleury.agwenst.metrics.EngineMetrics;
+import org.mofleury.agwenst.persistence.GameJournal;
+import org.mofleury.agwenst.persistence.GameSnapshot;
+import org.mofleury.agwenst.simulation.PlayerPolicy;
+
+import lombok.Getter;
+import lombok.Setter;
 
 public class ConsoleUI {
 
-	@RequiredArgsConstructor
-	private static class ExceptionCatchingConsole {
-		private final ConsoleReader delegate;
-
-		public void println(String s) {
-			try {
-				delegate.println(s);
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
-		}
-
-		public void print(String s) {
-			try {
-				delegate.print(s);
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
-		}
-
-		public void clearScreen() {
-			try {
-				delegate.clearScreen();
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
-		}
-	}
-
 	private static final Comparator<? super Card> HAND_SORTER = Comparator.comparing(Card::getType)
 			.reversed()
 			.thenComparing(Card::getValue)
 			.thenComparing(Comparator.comparingInt(Card::getTargetRow))
 			.thenComparing(Card::getName);
 
-	private final ConsoleReader console;
-	private final ExceptionCatchingConsole out;
-
-	private Game game;
+	// null for sessions that are not attached to a terminal
+	private final TerminalConsole terminal;
+	@Getter
+	private final ScreenOutput out;
+	// lines of the field display, reused from one display to the next
+	private final List<String> frame = new ArrayList<>();
+	private final StringBuilder line = new StringBuilder();
+	private final StringBuilder[] rowEffects = new StringBuilder[Game.ROW_COUNT];
+
+	// catalog ids sorted with HAND_SORTER, rebuilt when the catalog grows
+	private int[] handOrder = new int[0];
+
+	// read by the threads following the game, see getState()
+	private volatile Game game;
+
+	// round and game ends are announced from the events of the game, read after each command; other
+	// consumers follow the game on threads of their own
+	private final EventRing events;
+	private final EventConsumer announcements;
+	// whether a thread reads the versions of the game, which are only published then
+	private boolean statesFollowed;
+	// whether the moves are written to a journal, which could not replay a loaded game
+	private boolean journaled;
+
+	// policies of the seats played by the computer, null for human seats
+	private final PlayerPolicy[] computerPlayers = new PlayerPolicy[2];
+	private final Random random = new Random();
 
 	private boolean cancelRequested = false;
 
-	public ConsoleUI() throws IOException {
-		console = new ConsoleReader();
-		out = new ExceptionCatchingConsole(console);
-
-		console.addCompleter(new StringsCompleter(Arrays.stream(Command.values())
-				.map(Command::getName)
-				.collect(toList())));
+	// whether save and load may touch the file system, which remote sessions must not
+	@Setter
+	private boolean filesAllowed;
 
+	{
+		for (int r = 0; r < Game.ROW_COUNT; r++) {
+			rowEffects[r] = new StringBuilder();
+		}
 	}
 
-	public void run(Game game) {
+	public ConsoleUI() throws IOException {
+		this(new TerminalConsole());
+	}
 
-		this.game = game;
+	private ConsoleUI(TerminalConsole terminal) {
+		this.terminal = terminal;
+		out = new ScreenOutput(terminal);
+		// leaves the threads following the game some room, see follow()
+		events = new EventRing(1 << 12);
+		announcements = new EventConsumer(events, this::announce);
+		filesAllowed = true;
+	}
 
-		try {
-			console.println("Welcome! type 'help' for directions");
+	/**
+	 * Creates a user interface driven through {@link #start(Game)} and {@link #execute(String)} rather than
+	 * {@link #run(Game)}.
+	 *
+	 * @param eventCapacity
+	 *            number of events kept between two commands, enough for the moves of the computer players
+	 */
+	public ConsoleUI(ConsoleOutput out, int eventCapacity) {
+		terminal = null;
+		this.out = new ScreenOutput(out);
+		events = new EventRing(eventCapacity);
+		announcements = new EventConsumer(events, this::announce);
+	}
 
-			displayField();
+	public void setComputerPlayer(int seat, PlayerPolicy policy) {
+		computerPlayers[seat] = policy;
+		if (policy != null) {
+			statesFollowed = true;
+		}
+	}
 
-			console.flush();
+	public void run(Game game) {
 
-			while (!cancelRequested) {
+		start(game);
 
-				console.setPrompt(game.getRound()
-						.getCurrentPlayer()
-						.getName() + " > ");
+		try {
+			while (true) {
 
-				String input = console.readLine();
+				String prompt = getPrompt();
+				FirstPrompt.reached();
+				String input = terminal.readLine(prompt);
 				if (input == null) {
 					// exit requested
 					break;
-				} else if (input.trim()
-						.isEmpty()) {
-					continue;
 				}
-				Optional<Command> c = Command.forInput(input.trim());
-				if (c.isPresent()) {
-					c.get()
-							.execute(console, this, input);
-				} else {
-					console.println("Don't know what to do with '" + input + "'");
-				}
-
-				if (game.gameOver()) {
-					console.print("Game Complete, ");
-					if (game.getWinner()
-							.isPresent()) {
-						console.println("the winner is " + game.getWinner()
-								.get()
-								.getName() + "!");
-					} else {
-						console.print("it's a draw!");
-					}
+				if (!execute(input)) {
 					break;
 				}
-
-				console.flush();
 			}
 
-			console.println("Thanks for playing!");
-			console.flush();
+			out.println("Thanks for playing!");
+			out.flush();
 		} catch (IOException e) {
 
 			e.printStackTrace();
 		}
 	}
 
+	public void start(Game game) {
+
+		this.game = game;
+		game.setEvents(events);
+		game.setMetrics(EngineMetrics.getInstance());
+		publishStates(game);
+		cancelRequested = false;
+
+		out.println("Welcome! type 'help' for directions");
+
+		displayField();
+
+		playComputerTurns();
+
+		out.flush();
+	}
+
+	/**
+	 * Hands the events of the games played from now on to a handler, on a thread of its own. The games then
+	 * publish their versions, which the handler may read with {@link #getState()}.
+	 *
+	 * @return the consumer running the handler, to close once the session is over
+	 */
+	public EventConsumer follow(GameEventHandler handler, String threadName) {
+		statesFollowed = true;
+		if (game != null) {
+			publishStates(game);
+		}
+		return startConsumer(handler, threadName);
+	}
+
+	private EventConsumer startConsumer(GameEventHandler handler, String threadName) {
+		EventConsumer consumer = new EventConsumer(events, handler);
+		consumer.start(threadName);
+		return consumer;
+	}
+
+	private void publishStates(Game played) {
+		if (statesFollowed && played.getState() == null) {
+			played.setStatePublished(true);
+		}
+	}
+
+	/**
+	 * Writes the moves of the games played from now on to a journal, on a thread of its own. Loading another
+	 * game is then refused.
+	 *
+	 * @return the consumer writing the journal, to close before the journal
+	 */
+	public EventConsumer record(GameJournal journal) {
+		journaled = true;
+		return startConsumer(journal, "journal");
+	}
+
+	/**
+	 * @return the latest version of the game being played, which any thread can read; null before a game is
+	 *         started
+	 */
+	public GameState getState() {
+		Game current = game;
+		return current == null ? null : current.getState();
+	}
+
+	public String getPrompt() {
+		return game.getRound()
+				.getCurrentPlayer()
+				.getName() + " > ";
+	}
+
+	/**
+	 * Handles one line of user input.
+	 *
+	 * @return false once the session is over, because the game is complete or exit was requested
+	 */
+	public boolean execute(String input) {
+		if (input.trim()
+				.isEmpty()) {
+			return true;
+		}
+
+		if (!Command.dispatch(this, input)) {
+			out.println("Don't know what to do with '" + input + "'");
+		}
+
+		playComputerTurns();
+
+		announcements.poll();
+		if (game.gameOver()) {
+			return false;
+		}
+
+		out.flush();
+		return !cancelRequested;
+	}
+
+	private void announce(GameEvent event) {
+		switch (event.getType()) {
+		case ROUND_ENDED:
+			out.println("Round " + event.getRoundCounter() + " won by " + game.getPlayers()
+					.get(event.getSeat())
+					.getName() + " (" + event.getScore(0) + " - " + event.getScore(1) + ")");
+			break;
+		case GAME_OVER:
+			out.print("Game Complete, ");
+			if (event.getSeat() >= 0) {
+				out.println("the winner is " + game.getPlayers()
+						.get(event.getSeat())
+						.getName() + "!");
+			} else {
+				out.println("it's a draw!");
+			}
+			break;
+		default:
+			break;
+		}
+	}
+
+	private void playComputerTurns() {
+		List<String> moves = new ArrayList<>();
+		while (!game.gameOver() && computerPlayers[game.getRound()
+				.getCurrentSeat()] != null) {
+			Player player = game.getRound()
+					.getCurrentPlayer();
+			int move = computerPlayers[game.getRound()
+					.getCurrentSeat()].chooseMove(game, random);
+			if (move == Game.PASS) {
+				moves.add(player.getName() + " passes");
+			} else {
+				moves.add(player.getName() + " plays " + formatCard(CardCatalog.getInstance()
+						.get(Game.moveCardId(move))));
+			}
+			game.applyMove(move);
+		}
+
+		if (!moves.isEmpty()) {
+			frame.clear();
+			frame.addAll(moves);
+			appendField();
+			out.drawFrame(frame);
+		}
+	}
+
+	public boolean isGameOver() {
+		return game.gameOver();
+	}
+
 	public void quit() {
 		cancelRequested = true;
 	}
 
 	public void displayHand() {
 		out.println("-------------------------");
-		indexedPlayerHand().forEach((i, c) -> {
-			out.println(i + " - " + formatCard(c));
-		});
+		Hand hand = currentHand();
+		int index = 0;
+		for (int id : handOrder()) {
+			int count = hand.count(id);
+			if (count > 0) {
+				out.println(++index + " - " + formatCard(CardCatalog.getInstance()
+						.get(id)) + (count > 1 ? " x" + count : ""));
+			}
+		}
 		out.println("-------------------------");
 	}
 
@@ -156,114 +314,137 @@ public class ConsoleUI {
 		throw new IllegalArgumentException("Unknown card type " + c.getType());
 	}
 
-	private Map<Integer, Card> indexedPlayerHand() {
-		AtomicInteger index = new AtomicInteger(0);
+	private Hand currentHand() {
+		return game.getHand(game.getRound()
+				.getCurrentSeat());
+	}
 
-		return game.getHands()
-				.get(game.getRound()
-						.getCurrentPlayer())
-				.getCards()
-				.stream()
-				.sorted(HAND_SORTER)
-				.collect(Collectors.toMap(c -> index.incrementAndGet(), c -> c));
+	private int[] handOrder() {
+		CardCatalog catalog = CardCatalog.getInstance();
+		if (handOrder.length != catalog.size()) {
+			handOrder = IntStream.range(0, catalog.size())
+					.boxed()
+					.sorted(Comparator.comparing(catalog::get, HAND_SORTER))
+					.mapToInt(Integer::intValue)
+					.toArray();
+		}
+		return handOrder;
 	}
 
+	/**
+	 * @param cardIndex
+	 *            index of a distinct card of the current hand, as displayed by {@link #displayHand()}
+	 */
 	public void playCard(int cardIndex) throws IndexOutOfBoundsException {
 
-		Card card = indexedPlayerHand().get(cardIndex);
-		if (card == null) {
-			throw new IndexOutOfBoundsException("No card at index " + cardIndex);
+		Hand hand = currentHand();
+		int index = 0;
+		for (int id : handOrder()) {
+			if (hand.contains(id) && ++index == cardIndex) {
+				game.playCard(CardCatalog.getInstance()
+						.get(id));
+				swapPlayers();
+				return;
+			}
 		}
-		game.playCard(card);
-
-		swapPlayers();
+		throw new IndexOutOfBoundsException("No card at index " + cardIndex);
 	}
 
 	private void swapPlayers() {
 
-		out.clearScreen();
+		redrawField();
 
-		displayField();
+	}
 
+	/**
+	 * Replaces the screen content with the field, only rewriting what changed on terminals that allow it.
+	 */
+	private void redrawField() {
+		frame.clear();
+		appendField();
+		out.drawFrame(frame);
 	}
 
 	public void displayField() {
+		frame.clear();
+		appendField();
+		out.printLines(frame);
+	}
 
-		Map<Player, Map<Integer, Row>> rows = game.getRound()
-				.getRows();
-
-		Map<Player, Integer> scores = game.getRound()
-				.computeScores();
-
-		Player currentPlayer = game.getRound()
-				.getCurrentPlayer();
-		Player otherPlayer = game.getRound()
-				.getOtherPlayer();
+	private void appendField() {
 
-		out.println("----------------------------");
+		Round round = game.getRound();
+		int currentSeat = round.getCurrentSeat();
+		int otherSeat = round.getOtherSeat();
 
-		String specialCards = game.getRound()
-				.getSpecialCards()
-				.stream()
-				.map(spc -> formatCard(spc))
-				.collect(joining("\n"));
+		frame.add("----------------------------");
 
-		out.println(specialCards);
+		for (StringBuilder effects : rowEffects) {
+			effects.setLength(0);
+		}
+		List<Card> specialCards = round.getSpecialCards();
+		for (Card spc : specialCards) {
+			frame.add(formatCard(spc));
+			if (spc.getEffect()
+					.isPresent()) {
+				rowEffects[spc.getTargetRow() - 1].append(spc.getEffect()
+						.get()
+						.getLabel());
+			}
+		}
+		if (specialCards.isEmpty()) {
+			frame.add("");
+		}
 
-		out.println("----------------------------");
-		out.println(playerStatus(otherPlayer));
-		out.println("----------( " + scores.get(otherPlayer) + " )-------------");
+		frame.add("----------------------------");
+		frame.add(playerStatus(otherSeat));
+		frame.add("----------( " + round.getScore(otherSeat) + " )-------------");
 
-		iterate(Game.ROW_COUNT, i -> i - 1).limit(Game.ROW_COUNT)
-				.forEach(r -> {
-					printRow(otherPlayer, rows, r);
-				});
+		for (int r = Game.ROW_COUNT; r >= 1; r--) {
+			appendRow(otherSeat, r);
+		}
 
-		out.println("----------------------------");
+		frame.add("----------------------------");
 
-		iterate(1, i -> i + 1).limit(Game.ROW_COUNT)
-				.forEach(r -> {
-					printRow(currentPlayer, rows, r);
-				});
+		for (int r = 1; r <= Game.ROW_COUNT; r++) {
+			appendRow(currentSeat, r);
+		}
 
-		out.println("----------( " + scores.get(currentPlayer) + " )-------------");
+		frame.add("----------( " + round.getScore(currentSeat) + " )-------------");
 
-		out.println(playerStatus(currentPlayer));
+		frame.add(playerStatus(currentSeat));
 	}
 
-	private String playerStatus(Player p) {
-		return p.getName() + " " + game.getVictories()
-				.get(p) + " <"
-				+ game.getHands()
-						.get(p)
-						.getCards()
+	private String playerStatus(int seat) {
+		return game.getPlayers()
+				.get(seat)
+				.getName() + " " + game.getVictories(seat) + " <"
+				+ game.getHand(seat)
 						.size()
 				+ ">" + (game.getRound()
-						.hasPassed(p) ? " passed" : "");
+						.hasPassed(seat) ? " passed" : "");
 	}
 
-	private void printRow(Player player, Map<Player, Map<Integer, Row>> rows, int r) {
-		out.print(" " + r + " |");
-
-		String effects = game.getRound()
-				.getSpecialCards()
-				.stream()
-				.filter(spc -> spc.getTargetRow() == r)
-				.filter(spc -> spc.getEffect()
-						.isPresent())
-				.map(spc -> spc.getEffect()
-						.get()
-						.getLabel())
-				.collect(joining());
-
-		out.print(String.format("%1$1s", effects) + "|");
-
-		rows.get(player)
-				.get(r)
-				.getCards()
-				.forEach(c -> out.print(c.getCard()
-						.getName() + "(" + c.getCurrentValue() + ") "));
-		out.println("");
+	private void appendRow(int seat, int r) {
+		line.setLength(0);
+		line.append(' ')
+				.append(r)
+				.append(" |");
+
+		StringBuilder effects = rowEffects[r - 1];
+		line.append(effects.length() == 0 ? " " : effects)
+				.append('|');
+
+		for (EngagedCard c : game.getRound()
+				.getRow(seat, r - 1)
+				.getCards()) {
+			line.append(c.getCard()
+					.getName())
+					.append('(')
+					.append(c.getCurrentValue())
+					.append(") ");
+		}
+		frame.add(line.toString());
 	}
 
 	public void displayStatus() {
@@ -271,15 +452,72 @@ public class ConsoleUI {
 		game.getPlayers()
 				.stream()
 				.forEach(p -> {
-					out.println(p.getName() + " : " + game.getVictories()
-							.get(p)
-							.intValue());
+					out.println(p.getName() + " : " + game.getVictories(p));
 				});
 	}
 
+	public void displayMetrics() {
+		out.println(EngineMetrics.getInstance()
+				.toString());
+		if (!EngineMetrics.TIMERS_ENABLED) {
+			out.println("timers are disabled, start with -Dagwenst.timers=true to enable them");
+		}
+	}
+
+	public void save(String file) {
+		if (!filesAllowed) {
+			out.println("saving is not available in this session");
+			return;
+		}
+		try {
+			GameSnapshot.save(game, Paths.get(file));
+			out.println("game saved to " + file);
+		} catch (IOException | InvalidPathException e) {
+			out.println("could not save to " + file + ": " + e.getMessage());
+		}
+	}
+
+	public void load(String file) {
+		if (!filesAllowed) {
+			out.println("loading is not available in this session");
+			return;
+		}
+		if (journaled) {
+			out.println("loading is not available while the game is journaled");
+			return;
+		}
+		Game loaded;
+		try {
+			loaded = GameSnapshot.load(Paths.get(file));
+		} catch (IOException | RuntimeException e) {
+			out.println("could not load " + file + ": " + e.getMessage());
+			return;
+		}
+		loaded.setEvents(events);
+		loaded.setMetrics(EngineMetrics.getInstance());
+		publishStates(loaded);
+		game = loaded;
+		// tells the threads following the game to catch up with the loaded one
+		Round round = loaded.getRound();
+		events.publish(GameEvent.Type.GAME_LOADED, round.getCurrentSeat(), -1, -1, loaded.getRoundCounter(),
+				round.getScore(0), round.getScore(1));
+		redrawField();
+	}
+
+	public void undo() {
+		if (!game.undo()) {
+			out.println("nothing to undo");
+			return;
+		}
+		// take back the computer moves too, up to the last human move
+		while (computerPlayers[game.getRound()
+				.getCurrentSeat()] != null && game.undo()) {
+		}
+		redrawField();
+	}
+
 	public void pass() {
 		game.pass();
-		out.clearScreen();
-		displayField();
+		redrawField();
 	}
 }
@@ -0,0 +1,25 @@
+package org.mofleury.agwenst.console;
+
+/**
+ * Reports on the standard error how long after the launch of the JVM the first prompt came, when the
+ * launcher gave the launch time, in milliseconds since the epoch, as the agwenst.launchedAt system property.
+ */
+final class FirstPrompt {
+
+	private static boolean reached;
+
+	private FirstPrompt() {
+	}
+
+	static synchronized void reached() {
+		if (reached) {
+			return;
+		}
+		reached = true;
+		String launchedAt = System.getProperty("agwenst.launchedAt");
+		if (launchedAt != null) {
+			System.err.println("first prompt " + (System.currentTimeMillis() - Long.parseLong(launchedAt))
+					+ " ms after launch");
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package org.mofleury.agwenst.console;
+
+import java.util.List;
+
+/**
+ * Keeps track of the frame last drawn at the top of an ANSI screen, so that the next frame only rewrites the
+ * lines that changed. Anything else printed in between may have scrolled the screen and forces a full
+ * repaint. Frames are written with a single call to the underlying output.
+ */
+class ScreenOutput implements ConsoleOutput {
+
+	private static final String ESC = "\u001b[";
+
+	private final ConsoleOutput delegate;
+
+	private final StringBuilder buffer = new StringBuilder();
+	// lines currently shown at the top of the screen, null when unknown
+	private String[] screen;
+
+	ScreenOutput(ConsoleOutput delegate) {
+		this.delegate = delegate;
+	}
+
+	/**
+	 * Replaces the screen content with the given lines.
+	 */
+	void drawFrame(List<String> lines) {
+		buffer.setLength(0);
+		if (!delegate.isAnsi() || lines.size() >= delegate.getHeight()) {
+			delegate.clearScreen();
+			appendLines(lines);
+			screen = null;
+		} else {
+			if (screen == null) {
+				buffer.append(ESC)
+						.append("H")
+						.append(ESC)
+						.append("2J");
+			}
+			for (int i = 0; i < lines.size(); i++) {
+				String line = lines.get(i);
+				if (screen == null || i >= screen.length || !screen[i].equals(line)) {
+					moveTo(i);
+					buffer.append(line)
+							.append(ESC)
+							.append('K');
+				}
+			}
+			// below the frame: the lines of a longer previous frame, the prompt and the echoed input
+			moveTo(lines.size());
+			buffer.append(ESC)
+					.append('J');
+			screen = lines.toArray(new String[lines.size()]);
+		}
+		delegate.print(buffer.toString());
+		delegate.flush();
+	}
+
+	private void moveTo(int line) {
+		buffer.append(ESC)
+				.append(line + 1)
+				.append(";1H");
+	}
+
+	/**
+	 * Prints the given lines after the current output.
+	 */
+	void printLines(List<String> lines) {
+		buffer.setLength(0);
+		appendLines(lines);
+		print(buffer.toString());
+	}
+
+	private void appendLines(List<String> lines) {
+		for (String line : lines) {
+			buffer.append(line)
+					.append('\n');
+		}
+	}
+
+	@Override
+	public void print(String s) {
+		screen = null;
+		delegate.print(s);
+	}
+
+	@Override
+	public void println(String s) {
+		screen = null;
+		delegate.println(s);
+	}
+
+	@Override
+	public void clearScreen() {
+		screen = null;
+		delegate.clearScreen();
+	}
+
+	@Override
+	public void flush() {
+		delegate.flush();
+	}
+
+	@Override
+	public boolean isAnsi() {
+		return delegate.isAnsi();
+	}
+
+	@Override
+	public int getHeight() {
+		return delegate.getHeight();
+	}
+}
@@ -0,0 +1,49 @@
+package org.mofleury.agwenst.console;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ * Writes to a character stream, for sessions without a terminal. Clearing the screen is ignored.
+ */
+public class StreamOutput implements ConsoleOutput {
+
+	private final Writer writer;
+
+	public StreamOutput(Writer writer) {
+		this.writer = writer;
+	}
+
+	@Override
+	public void print(String s) {
+		try {
+			writer.write(s);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void println(String s) {
+		try {
+			writer.write(s);
+			writer.write('\n');
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void clearScreen() {
+	}
+
+	@Override
+	public void flush() {
+		try {
+			writer.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
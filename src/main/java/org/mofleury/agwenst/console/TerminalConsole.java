@@ -0,0 +1,86 @@
+package org.mofleury.agwenst.console;
+
+import static java.util.stream.Collectors.toList;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import jline.console.ConsoleReader;
+import jline.console.completer.StringsCompleter;
+
+/**
+ * The interactive terminal, through jline. Only this class refers to jline, so that sessions without a
+ * terminal never load it.
+ */
+class TerminalConsole implements ConsoleOutput {
+
+	private final ConsoleReader delegate;
+
+	TerminalConsole() throws IOException {
+		delegate = new ConsoleReader();
+		delegate.addCompleter(new StringsCompleter(Arrays.stream(Command.values())
+				.map(Command::getName)
+				.collect(toList())));
+	}
+
+	/**
+	 * @return the line entered, null at the end of the input
+	 */
+	String readLine(String prompt) throws IOException {
+		delegate.setPrompt(prompt);
+		return delegate.readLine();
+	}
+
+	// written to the output of the reader, whose print methods would escape line feeds and ANSI sequences
+	@Override
+	public void println(String s) {
+		try {
+			delegate.getOutput()
+					.write(s);
+			delegate.getOutput()
+					.write('\n');
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public void print(String s) {
+		try {
+			delegate.getOutput()
+					.write(s);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public void clearScreen() {
+		try {
+			delegate.clearScreen();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public void flush() {
+		try {
+			delegate.flush();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public boolean isAnsi() {
+		return delegate.getTerminal()
+				.isAnsiSupported();
+	}
+
+	@Override
+	public int getHeight() {
+		return delegate.getTerminal()
+				.getHeight();
+	}
+}
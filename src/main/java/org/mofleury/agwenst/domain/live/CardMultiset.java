@@ -0,0 +1,154 @@
+package org.mofleury.agwenst.domain.live;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.mofleury.agwenst.domain.still.Card;
+import org.mofleury.agwenst.domain.still.CardCatalog;
+
+/**
+ * Unordered collection of cards, stored as a count per {@link CardCatalog} id, so that identical copies of
+ * a card collapse into a single entry.
+ * <p>
+ * Ids with a non zero count are also kept in a dense array, giving O(1) add, remove and contains, and
+ * iteration over distinct cards without scanning the whole catalog.
+ */
+public abstract class CardMultiset {
+
+	private int[] counts = new int[0];
+
+	// distinct ids present, and the position of each id in that array
+	private int[] distinct = new int[16];
+	private int[] positions = new int[0];
+	private int distinctCount;
+
+	private int size;
+
+	/**
+	 * @return the total number of cards, counting copies
+	 */
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int count(int id) {
+		return id < counts.length ? counts[id] : 0;
+	}
+
+	public boolean contains(int id) {
+		return count(id) > 0;
+	}
+
+	public int distinctCount() {
+		return distinctCount;
+	}
+
+	/**
+	 * @return the id of the index-th distinct card, 0 <= index < {@link #distinctCount()}
+	 */
+	public int distinctId(int index) {
+		return distinct[index];
+	}
+
+	/**
+	 * @return the id of the index-th card when copies are counted, 0 <= index < {@link #size()}
+	 */
+	public int idAt(int index) {
+		for (int i = 0; i < distinctCount; i++) {
+			index -= counts[distinct[i]];
+			if (index < 0) {
+				return distinct[i];
+			}
+		}
+		throw new IndexOutOfBoundsException("No card at index " + index);
+	}
+
+	public void add(int id) {
+		if (id >= counts.length) {
+			int length = Math.max(id + 1, CardCatalog.getInstance()
+					.size());
+			counts = Arrays.copyOf(counts, length);
+			positions = Arrays.copyOf(positions, length);
+		}
+		if (counts[id]++ == 0) {
+			if (distinctCount == distinct.length) {
+				distinct = Arrays.copyOf(distinct, distinctCount * 2);
+			}
+			positions[id] = distinctCount;
+			distinct[distinctCount++] = id;
+		}
+		size++;
+	}
+
+	public void addAll(List<Card> cards) {
+		for (int i = 0; i < cards.size(); i++) {
+			add(cards.get(i)
+					.getId());
+		}
+	}
+
+	/**
+	 * Removes one copy of the card.
+	 *
+	 * @return false if there was none
+	 */
+	public boolean remove(int id) {
+		if (!contains(id)) {
+			return false;
+		}
+		if (--counts[id] == 0) {
+			int last = distinct[--distinctCount];
+			distinct[positions[id]] = last;
+			positions[last] = positions[id];
+		}
+		size--;
+		return true;
+	}
+
+	public void clear() {
+		for (int i = 0; i < distinctCount; i++) {
+			counts[distinct[i]] = 0;
+		}
+		distinctCount = 0;
+		size = 0;
+	}
+
+	protected void copyInto(CardMultiset copy) {
+		copy.counts = counts.clone();
+		copy.distinct = distinct.clone();
+		copy.positions = positions.clone();
+		copy.distinctCount = distinctCount;
+		copy.size = size;
+	}
+
+	/**
+	 * @return a read-only view of the cards, copies of a card being next to each other
+	 */
+	public List<Card> getCards() {
+		CardCatalog catalog = CardCatalog.getInstance();
+		return new AbstractList<Card>() {
+			@Override
+			public Card get(int index) {
+				if (index >= size) {
+					throw new IndexOutOfBoundsException("No card at index " + index);
+				}
+				return catalog.get(idAt(index));
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "(cards=" + getCards() + ")";
+	}
+}
@@ -1,15 +1,10 @@
 package org.mofleury.agwenst.domain.live;
 
-import java.util.ArrayList;
-import java.util.Collection;
+public class Deck extends CardMultiset {
 
-import org.mofleury.agwenst.domain.still.Card;
-
-import lombok.Getter;
-import lombok.ToString;
-
-@Getter
-@ToString
-public class Deck {
-	private final Collection<Card> cards = new ArrayList<>();
+	public Deck copy() {
+		Deck copy = new Deck();
+		copyInto(copy);
+		return copy;
+	}
 }
@@ -17,4 +17,10 @@ public class EngagedCard {
 	public EngagedCard(Card card) {
 		this.card = card;
 	}
+
+	public EngagedCard copy() {
+		EngagedCard copy = new EngagedCard(card);
+		copy.currentValue = currentValue;
+		return copy;
+	}
 }
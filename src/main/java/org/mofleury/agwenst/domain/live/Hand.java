@@ -1,15 +1,10 @@
 package org.mofleury.agwenst.domain.live;
 
-import java.util.ArrayList;
-import java.util.Collection;
+public class Hand extends CardMultiset {
 
-import org.mofleury.agwenst.domain.still.Card;
-
-import lombok.Getter;
-import lombok.ToString;
-
-@Getter
-@ToString
-public class Hand {
-	private final Collection<Card> cards = new ArrayList<>();
+	public Hand copy() {
+		Hand copy = new Hand();
+		copyInto(copy);
+		return copy;
+	}
 }
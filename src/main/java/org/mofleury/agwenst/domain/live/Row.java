@@ -13,5 +13,17 @@ import lombok.ToString;
 public class Row {
 
 	private EngagedCard modifier;
+	private int score;
 	private final List<EngagedCard> cards = new ArrayList<>();
+
+	public Row copy() {
+		Row copy = new Row();
+		copy.modifier = modifier == null ? null : modifier.copy();
+		copy.score = score;
+		for (int i = 0; i < cards.size(); i++) {
+			copy.cards.add(cards.get(i)
+					.copy());
+		}
+		return copy;
+	}
 }
@@ -2,15 +2,21 @@ package org.mofleury.agwenst.domain.still;
 
 import java.util.Optional;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.ToString;
 
-@RequiredArgsConstructor
+/**
+ * Card definition, obtained from {@link CardCatalog} so that there is a single instance per definition.
+ */
+@RequiredArgsConstructor(access = AccessLevel.PACKAGE)
 @Getter
 @ToString
 public class Card {
 
+	private final int id;
+
 	private final CardType type;
 
 	private final String name;
@@ -0,0 +1,104 @@
+package org.mofleury.agwenst.domain.still;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Registry of every distinct card definition, each one interned once under a small int id.
+ * <p>
+ * Cards are flyweights: every copy of a definition in decks, hands and rows is the same {@link Card}
+ * instance, and card properties can also be read by id from primitive arrays, which lets hot paths work
+ * on ints. Ids are dense, starting at 0, and only valid within the running process.
+ */
+public class CardCatalog {
+
+	private static final CardCatalog INSTANCE = new CardCatalog();
+
+	public static CardCatalog getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Column arrays, replaced as a whole on growth so that readers always see consistent arrays.
+	 */
+	private static class Columns {
+		private final Card[] cards;
+		private final CardType[] types;
+		private final int[] values;
+		private final int[] targetRows;
+		// effect ordinal plus one, 0 for no effect
+		private final byte[] effects;
+
+		Columns(int capacity, Columns previous) {
+			cards = previous == null ? new Card[capacity] : Arrays.copyOf(previous.cards, capacity);
+			types = previous == null ? new CardType[capacity] : Arrays.copyOf(previous.types, capacity);
+			values = previous == null ? new int[capacity] : Arrays.copyOf(previous.values, capacity);
+			targetRows = previous == null ? new int[capacity] : Arrays.copyOf(previous.targetRows, capacity);
+			effects = previous == null ? new byte[capacity] : Arrays.copyOf(previous.effects, capacity);
+		}
+	}
+
+	private final Map<String, Card> byDefinition = new HashMap<>();
+
+	private volatile Columns columns = new Columns(64, null);
+	private volatile int size;
+
+	/**
+	 * @return the interned card for this definition, created on first use
+	 */
+	public synchronized Card card(CardType type, String name, int value, int targetRow, Optional<Effect> effect) {
+		String definition = type + "|" + name + "|" + value + "|" + targetRow + "|" + effect.map(Effect::name)
+				.orElse("");
+		Card card = byDefinition.get(definition);
+		if (card == null) {
+			int id = size;
+			card = new Card(id, type, name, value, targetRow, effect);
+
+			Columns c = columns;
+			if (id == c.cards.length) {
+				c = new Columns(id * 2, c);
+			}
+			c.cards[id] = card;
+			c.types[id] = type;
+			c.values[id] = value;
+			c.targetRows[id] = targetRow;
+			c.effects[id] = (byte) (effect.isPresent() ? effect.get()
+					.ordinal() + 1 : 0);
+			columns = c;
+			size = id + 1;
+
+			byDefinition.put(definition, card);
+		}
+		return card;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public Card get(int id) {
+		return columns.cards[id];
+	}
+
+	public CardType type(int id) {
+		return columns.types[id];
+	}
+
+	public int value(int id) {
+		return columns.values[id];
+	}
+
+	public int targetRow(int id) {
+		return columns.targetRows[id];
+	}
+
+	/**
+	 * @return the effect of the card, null if it has none
+	 */
+	public Effect effect(int id) {
+		int effect = columns.effects[id];
+		return effect == 0 ? null : Effect.values()[effect - 1];
+	}
+}
@@ -1,144 +1,610 @@
 package org.mofleury.agwenst.engine;
 
-import static java.util.stream.Collectors.toList;
-import static java.util.stream.Collectors.toMap;
-
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Random;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import org.mofleury.agwenst.domain.live.Deck;
 import org.mofleury.agwenst.domain.live.Hand;
 import org.mofleury.agwenst.domain.still.Card;
+import org.mofleury.agwenst.domain.still.CardCatalog;
+import org.mofleury.agwenst.domain.still.CardType;
 import org.mofleury.agwenst.domain.still.InitialDeck;
 import org.mofleury.agwenst.domain.still.Player;
+import org.mofleury.agwenst.events.EventRing;
+import org.mofleury.agwenst.events.GameEvent;
+import org.mofleury.agwenst.metrics.EngineMetrics;
 
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 
-@RequiredArgsConstructor
-@Getter
 public class Game {
 
 	public final static int ROW_COUNT = 3;
 	public final static int INITIAL_HAND_SIZE = 8;
 
-	private final Random rand;
+	/**
+	 * Move code of a pass. Playing a card is coded as its catalog id plus one, see {@link #cardMove(int)}.
+	 */
+	public final static int PASS = 0;
+
+	@Getter
+	private final GameRandom rand;
 
-	private final Map<Player, AtomicInteger> victories;
-	private final AtomicInteger roundCounter;
+	// all per player state is indexed by seat, the position of the player in players
+	private final int[] victories;
+	@Getter
+	private int roundCounter;
 
+	@Getter
 	private final List<Player> players;
+	@Getter
 	private final List<Player> shuffledPlayers;
+	private final int firstSeat;
 
-	private final Map<Player, Deck> decks;
-	private final Map<Player, Hand> hands;
+	private final Deck[] decks;
+	private final Hand[] hands;
+	// additive Zobrist hash of each hand
+	private final long[] handHashes;
 
+	@Getter
 	private Round round;
 
+	private final UndoLog undoLog = new UndoLog();
+
+	// where the game publishes its events, null for none; the events of a move are committed once its version
+	// is published, so that a consumer reading them finds the move in getState()
+	@Getter
+	@Setter
+	private EventRing events;
+
+	// where the moves of the game are counted, null for none, as for searches and simulations
+	@Getter
+	private EngineMetrics metrics;
+
+	// latest version of the game, null unless states are published
+	private volatile GameState state;
+	// round the latest version was taken from
+	private Round stateRound;
+
 	public Game(long seed, List<Player> players, Map<Player, InitialDeck> initialDecks) {
-		rand = new Random(seed);
+		rand = new GameRandom(seed);
 
 		this.players = new ArrayList<>(players);
 
-		victories = players.stream()
-				.collect(toMap(p -> p, p -> new AtomicInteger(0)));
-		roundCounter = new AtomicInteger(0);
-
-		decks = players.stream()
-				.collect(toMap(p -> p, p -> new Deck()));
+		victories = new int[players.size()];
+		roundCounter = 0;
 
-		hands = players.stream()
-				.collect(toMap(p -> p, p -> new Hand()));
+		decks = new Deck[players.size()];
+		hands = new Hand[players.size()];
+		handHashes = new long[players.size()];
+		for (int seat = 0; seat < players.size(); seat++) {
+			decks[seat] = new Deck();
+			hands[seat] = new Hand();
+		}
 
 		prepareDecksAndHands(initialDecks);
 
 		shuffledPlayers = new ArrayList<>(players);
 		Collections.shuffle(shuffledPlayers, rand);
+		firstSeat = seatOf(shuffledPlayers.get(0));
 
 		newRound();
 	}
 
+	private Game(Game other) {
+		rand = other.rand;
+		victories = other.victories.clone();
+		roundCounter = other.roundCounter;
+		players = other.players;
+		shuffledPlayers = other.shuffledPlayers;
+		firstSeat = other.firstSeat;
+
+		decks = new Deck[other.decks.length];
+		hands = new Hand[other.hands.length];
+		for (int seat = 0; seat < players.size(); seat++) {
+			decks[seat] = other.decks[seat].copy();
+			hands[seat] = other.hands[seat].copy();
+		}
+		handHashes = other.handHashes.clone();
+
+		round = new Round(other.round);
+	}
+
+	private Game(GameRandom rand, List<Player> players, List<Player> shuffledPlayers, int[] victories,
+			int roundCounter, Deck[] decks, Hand[] hands, Round round) {
+		this.rand = rand;
+		this.players = new ArrayList<>(players);
+		this.shuffledPlayers = new ArrayList<>(shuffledPlayers);
+		this.firstSeat = seatOf(shuffledPlayers.get(0));
+		this.victories = victories.clone();
+		this.roundCounter = roundCounter;
+		this.decks = decks.clone();
+		this.hands = hands.clone();
+		this.handHashes = new long[players.size()];
+		for (int seat = 0; seat < players.size(); seat++) {
+			rehashHand(seat);
+		}
+		this.round = round;
+	}
+
+	/**
+	 * Rebuilds a game from its parts, for instance when loading a saved game. The game takes ownership of the
+	 * decks, hands and round, and starts with an empty undo history.
+	 */
+	public static Game restore(GameRandom rand, List<Player> players, List<Player> shuffledPlayers, int[] victories,
+			int roundCounter, Deck[] decks, Hand[] hands, Round round) {
+		return new Game(rand, players, shuffledPlayers, victories, roundCounter, decks, hands, round);
+	}
+
+	/**
+	 * Starts a game from a published version of another one, for instance to search from it while the
+	 * original goes on. The random generator is shared as with {@link #copy()}. The branch publishes its own
+	 * versions, which share with the given one whatever its moves do not change.
+	 */
+	public static Game branch(GameState state) {
+		List<Player> players = state.getPlayers();
+		int seats = players.size();
+		int[] victories = new int[seats];
+		Deck[] decks = new Deck[seats];
+		Hand[] hands = new Hand[seats];
+		boolean[] passed = new boolean[seats];
+		for (int seat = 0; seat < seats; seat++) {
+			victories[seat] = state.getVictories(seat);
+			decks[seat] = new Deck();
+			state.getDeck(seat)
+					.addTo(decks[seat]);
+			hands[seat] = new Hand();
+			state.getHand(seat)
+					.addTo(hands[seat]);
+			passed[seat] = state.hasPassed(seat);
+		}
+
+		Round round = new Round(players, state.getCurrentSeat());
+		round.setTurn(state.getCurrentSeat(), passed);
+		for (Card c : state.getSpecialCards()) {
+			round.playCard(c);
+		}
+		for (int seat = 0; seat < seats; seat++) {
+			for (int r = 0; r < ROW_COUNT; r++) {
+				GameState.RowState row = state.getRow(seat, r);
+				if (row.getModifier() != null) {
+					round.setModifier(seat, r, row.getModifier());
+				}
+				for (int i = 0; i < row.getCardCount(); i++) {
+					round.playCard(seat, row.getCard(i));
+				}
+			}
+		}
+
+		Game game = new Game(state.rand, players, state.getShuffledPlayers(), victories, state.getRoundCounter(),
+				decks, hands, round);
+		game.state = state;
+		game.stateRound = round;
+		return game;
+	}
+
+	/**
+	 * Copies the game state so that it can be played independently, for instance by a search. The random
+	 * generator, only used while dealing, is shared, and the copy starts with an empty undo history, no
+	 * event ring and without publishing states.
+	 */
+	public Game copy() {
+		return new Game(this);
+	}
+
 	private void newRound() {
-		round = new Round(players, shuffledPlayers.get(roundCounter.get() % 2));
+		round = new Round(players, roundCounter % 2 == 0 ? firstSeat : 1 - firstSeat);
+		round.setMetrics(metrics);
 	}
 
 	private void prepareDecksAndHands(Map<Player, InitialDeck> initialDecks) {
-		players.forEach(p -> {
-			List<Card> candidates = new ArrayList<>(initialDecks.get(p)
+		for (int seat = 0; seat < players.size(); seat++) {
+			List<Card> candidates = new ArrayList<>(initialDecks.get(players.get(seat))
 					.getCards());
 			Collections.shuffle(candidates, rand);
-			hands.get(p)
-					.getCards()
-					.addAll(candidates.stream()
-							.limit(INITIAL_HAND_SIZE)
-							.collect(toList()));
 
-			decks.get(p)
-					.getCards()
-					.addAll(candidates.stream()
-							.skip(INITIAL_HAND_SIZE)
-							.collect(toList()));
-		});
+			int handSize = Math.min(INITIAL_HAND_SIZE, candidates.size());
+			hands[seat].addAll(candidates.subList(0, handSize));
+			decks[seat].addAll(candidates.subList(handSize, candidates.size()));
+			rehashHand(seat);
+		}
+	}
+
+	private void rehashHand(int seat) {
+		long hash = 0;
+		Hand hand = hands[seat];
+		for (int i = 0; i < hand.distinctCount(); i++) {
+			int id = hand.distinctId(i);
+			hash += hand.count(id) * Zobrist.cardKey(id, Zobrist.handZone(seat));
+		}
+		handHashes[seat] = hash;
+	}
+
+	/**
+	 * Deals the given cards again to a seat: the hand keeps its size and is filled with the first cards,
+	 * the deck gets the others. Used to sample the hidden cards of an opponent; clears the undo history.
+	 */
+	public void redeal(int seat, List<Card> cards) {
+		int handSize = hands[seat].size();
+		hands[seat].clear();
+		hands[seat].addAll(cards.subList(0, handSize));
+		decks[seat].clear();
+		decks[seat].addAll(cards.subList(handSize, cards.size()));
+		rehashHand(seat);
+		undoLog.clear();
+		if (state != null) {
+			stateRound = round;
+			state = GameState.of(this, state.getVersion() + 1);
+		}
+	}
+
+	/**
+	 * Counts the moves of the game from now on, the game counting as started, and times its rounds when
+	 * {@link EngineMetrics#TIMERS_ENABLED}. Copies and branches of the game are not counted.
+	 *
+	 * @param metrics
+	 *            null to stop counting
+	 */
+	public void setMetrics(EngineMetrics metrics) {
+		this.metrics = metrics;
+		round.setMetrics(metrics);
+		if (metrics != null) {
+			metrics.gameStarted();
+		}
+	}
+
+	/**
+	 * Starts or stops publishing an immutable version of the game after each move, see {@link #getState()}.
+	 * Off by default, as searches and simulations have no use for it.
+	 */
+	public void setStatePublished(boolean published) {
+		stateRound = round;
+		state = published ? GameState.of(this, 0) : null;
+	}
+
+	/**
+	 * @return the latest version of the game, which any thread can read while the game goes on; null
+	 *         unless states are published
+	 */
+	public GameState getState() {
+		return state;
+	}
+
+	/**
+	 * @return the latest published version of the game, or when states are not published a version taken
+	 *         now and shared with no other
+	 */
+	public GameState snapshot() {
+		GameState published = state;
+		return published != null ? published : GameState.of(this, 0);
+	}
+
+	private void publishState(int seat, Card card) {
+		state = state.next(this, seat, card, round != stateRound);
+		stateRound = round;
+	}
+
+	/**
+	 * @return Zobrist hash of the full position: hands, rows, special cards, turn, pass flags, victories
+	 *         and round counter
+	 */
+	public long getHash() {
+		return handHashes[0] + handHashes[1] + round.getCardsHash() ^ flagsKey();
+	}
+
+	/**
+	 * @return Zobrist hash of the position as known by a seat, in which the other hand is only known by
+	 *         its size
+	 */
+	public long getObservedHash(int seat) {
+		int other = 1 - seat;
+		return handHashes[seat] + Zobrist.handSizeKey(other, hands[other].size()) + round.getCardsHash()
+				^ flagsKey();
+	}
+
+	private long flagsKey() {
+		return Zobrist.flagsKey(round.getCurrentSeat(), round.passedMask(), roundCounter, victories[0],
+				victories[1]);
+	}
+
+	public int seatOf(Player p) {
+		return Round.seatOf(players, p);
+	}
+
+	public Hand getHand(int seat) {
+		return hands[seat];
+	}
+
+	public Hand getHand(Player p) {
+		return getHand(seatOf(p));
+	}
+
+	public Deck getDeck(int seat) {
+		return decks[seat];
+	}
+
+	public int getVictories(int seat) {
+		return victories[seat];
+	}
+
+	public int getVictories(Player p) {
+		return getVictories(seatOf(p));
+	}
+
+	/**
+	 * @return a read-only view of the hands, keyed by player
+	 */
+	public Map<Player, Hand> getHands() {
+		return bySeat(hands);
+	}
+
+	/**
+	 * @return a read-only view of the decks, keyed by player
+	 */
+	public Map<Player, Deck> getDecks() {
+		return bySeat(decks);
+	}
+
+	/**
+	 * @return a read-only view of the victory counts, keyed by player
+	 */
+	public Map<Player, Integer> getVictories() {
+		Map<Player, Integer> view = new HashMap<>();
+		for (int seat = 0; seat < players.size(); seat++) {
+			view.put(players.get(seat), victories[seat]);
+		}
+		return Collections.unmodifiableMap(view);
+	}
+
+	private <T> Map<Player, T> bySeat(T[] values) {
+		Map<Player, T> view = new HashMap<>();
+		for (int seat = 0; seat < players.size(); seat++) {
+			view.put(players.get(seat), values[seat]);
+		}
+		return Collections.unmodifiableMap(view);
+	}
+
+	public static int cardMove(int cardId) {
+		return cardId + 1;
+	}
+
+	/**
+	 * @return the catalog id of the card played by a move, -1 for a pass
+	 */
+	public static int moveCardId(int move) {
+		return move - 1;
+	}
+
+	/**
+	 * @return the size of a buffer large enough for {@link #generateMoves(int[])}
+	 */
+	public int maxMoveCount() {
+		return hands[round.getCurrentSeat()].distinctCount() + 1;
+	}
+
+	/**
+	 * Writes the legal moves of the current player: one per distinct card of the hand, then pass.
+	 *
+	 * @param moves
+	 *            buffer of at least {@link #maxMoveCount()} moves
+	 * @return the number of moves written, 0 once the game is over
+	 */
+	public int generateMoves(int[] moves) {
+		if (gameOver()) {
+			return 0;
+		}
+		Hand hand = hands[round.getCurrentSeat()];
+		int count = hand.distinctCount();
+		for (int i = 0; i < count; i++) {
+			moves[i] = cardMove(hand.distinctId(i));
+		}
+		moves[count] = PASS;
+		return count + 1;
+	}
+
+	public boolean isLegal(int move) {
+		if (gameOver()) {
+			return false;
+		}
+		return move == PASS || move > 0 && hands[round.getCurrentSeat()].contains(moveCardId(move));
+	}
+
+	/**
+	 * Plays a move if it is legal.
+	 *
+	 * @return false, leaving the game untouched, if the move is not legal
+	 */
+	public boolean applyMove(int move) {
+		if (!isLegal(move)) {
+			return false;
+		}
+		if (move == PASS) {
+			pass();
+		} else {
+			int cardId = moveCardId(move);
+			hands[round.getCurrentSeat()].remove(cardId);
+			doPlayCard(CardCatalog.getInstance()
+					.get(cardId));
+		}
+		return true;
 	}
 
 	public void playCard(Card card) {
-		boolean found = hands.get(round.getCurrentPlayer())
-				.getCards()
-				.remove(card);
-		if (!found) {
+		if (!hands[round.getCurrentSeat()].remove(card.getId())) {
 			throw new IllegalStateException(
 					"Player " + round.getCurrentPlayer() + "does not have card " + card + " in his hand");
 		}
+		doPlayCard(card);
+	}
+
+	/**
+	 * Plays a card already taken from the hand of the current player.
+	 */
+	private void doPlayCard(Card card) {
+		int seat = round.getCurrentSeat();
+		Hand hand = hands[seat];
+		undoLog.push(card.getId(), seat, round.passedMask());
+		handHashes[seat] -= Zobrist.cardKey(card.getId(), Zobrist.handZone(seat));
 
 		round.playCard(card);
+		if (metrics != null) {
+			metrics.cardPlayed();
+		}
 
-		if (hands.get(round.getCurrentPlayer())
-				.getCards()
-				.isEmpty()) {
-			pass();
+		if (events != null) {
+			publish(GameEvent.Type.CARD_PLAYED, seat, card.getId(), -1);
+			int rowIndex = card.getTargetRow() - 1;
+			if (card.getType() == CardType.SPECIAL && rowIndex >= 0 && rowIndex < ROW_COUNT) {
+				publish(GameEvent.Type.STRENGTHS_CHANGED, seat, card.getId(), rowIndex);
+			}
+		}
+
+		if (hand.isEmpty()) {
+			doPass(GameEvent.Type.OUT_OF_CARDS);
 		} else {
 			round.swapPlayerIfPossible();
 		}
+
+		if (state != null) {
+			publishState(seat, card);
+		}
+		if (events != null) {
+			events.commit();
+		}
 	}
 
 	public void pass() {
+		int seat = round.getCurrentSeat();
+		undoLog.push(-1, seat, round.passedMask());
+		doPass(GameEvent.Type.PASSED);
+		if (metrics != null) {
+			metrics.passed();
+		}
+
+		if (state != null) {
+			publishState(seat, null);
+		}
+		if (events != null) {
+			events.commit();
+		}
+	}
+
+	/**
+	 * @param type
+	 *            {@link GameEvent.Type#PASSED}, or {@link GameEvent.Type#OUT_OF_CARDS} when the hand was emptied
+	 */
+	private void doPass(GameEvent.Type type) {
+		if (events != null) {
+			publish(type, round.getCurrentSeat(), -1, -1);
+		}
 		round.pass();
 		if (round.hasEnded()) {
 			endRound();
 		}
 	}
 
+	/**
+	 * Reverts the last {@link #playCard(Card)} or {@link #pass()}, including the end of round it may have
+	 * triggered.
+	 *
+	 * @return false if there is no move to revert
+	 */
+	public boolean undo() {
+		if (undoLog.size() == 0) {
+			return false;
+		}
+		if (metrics != null) {
+			metrics.moveUndone(undoLog.isPlay(), undoLog.hasEndedRound(), gameOver());
+		}
+
+		if (undoLog.hasEndedRound()) {
+			victories[undoLog.winnerSeat()]--;
+			roundCounter--;
+			round = undoLog.endedRound();
+			round.setMetrics(metrics);
+		}
+
+		int seat = undoLog.previousSeat();
+		round.restore(seat, undoLog.passedMask());
+		Card card = null;
+		if (undoLog.isPlay()) {
+			card = CardCatalog.getInstance()
+					.get(undoLog.cardId());
+			round.unplayCard(card, seat);
+			hands[seat].add(card.getId());
+			handHashes[seat] += Zobrist.cardKey(card.getId(), Zobrist.handZone(seat));
+		}
+
+		undoLog.pop();
+
+		if (state != null) {
+			publishState(seat, card);
+		}
+
+		if (events != null) {
+			publish(GameEvent.Type.UNDONE, seat, -1, -1);
+			events.commit();
+		}
+		return true;
+	}
+
+	/**
+	 * @return the number of moves that can be reverted with {@link #undo()}
+	 */
+	public int getHistorySize() {
+		return undoLog.size();
+	}
+
 	private void endRound() {
 
-		roundCounter.incrementAndGet();
+		roundCounter++;
 
-		Optional<Player> roundWinner = round.findWinner();
+		int winnerSeat = round.findWinnerSeat();
+		victories[winnerSeat]++;
+		undoLog.roundEnded(round, winnerSeat);
 
-		roundWinner.ifPresent(p -> {
-			victories.get(p)
-					.incrementAndGet();
-		});
+		if (metrics != null) {
+			metrics.roundEnded();
+		}
+		if (events != null) {
+			publish(GameEvent.Type.ROUND_ENDED, winnerSeat, -1, -1);
+		}
 
 		if (!gameOver()) {
 			newRound();
+		} else {
+			if (metrics != null) {
+				metrics.gameFinished();
+			}
+			if (events != null) {
+				publish(GameEvent.Type.GAME_OVER, getWinnerSeat(), -1, -1);
+			}
+		}
+	}
+
+	private void publish(GameEvent.Type type, int seat, int cardId, int rowIndex) {
+		events.write(type, seat, cardId, rowIndex, roundCounter, round.getScore(0), round.getScore(1));
+	}
+
+	public int getWinnerSeat() {
+		for (int seat = 0; seat < victories.length; seat++) {
+			if (victories[seat] == 2) {
+				return seat;
+			}
 		}
+		return -1;
 	}
 
 	public Optional<Player> getWinner() {
-		return victories.entrySet()
-				.stream()
-				.filter(e -> e.getValue()
-						.get() == 2)
-				.map(e -> e.getKey())
-				.findAny();
+		int seat = getWinnerSeat();
+		return seat < 0 ? Optional.empty() : Optional.of(players.get(seat));
 	}
 
 	public boolean gameOver() {
-		return getWinner().isPresent() || (roundCounter.get() == 3);
+		return getWinnerSeat() >= 0 || (roundCounter == 3);
 	}
 }
@@ -0,0 +1,49 @@
+package org.mofleury.agwenst.engine;
+
+import java.util.Random;
+
+/**
+ * The linear congruential generator of {@link Random}, giving the same sequences for the same seed, but
+ * with a state that can be read and set, so that a saved game deals on exactly as the original would have.
+ * Not thread safe.
+ */
+public class GameRandom extends Random {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final long MULTIPLIER = 0x5DEECE66DL;
+	private static final long ADDEND = 0xBL;
+	private static final long MASK = (1L << 48) - 1;
+
+	// set by setSeed, called from the Random constructor
+	private long state;
+
+	public GameRandom(long seed) {
+		super(seed);
+	}
+
+	/**
+	 * @return a generator in the given state, as returned by {@link #getState()}
+	 */
+	public static GameRandom fromState(long state) {
+		GameRandom random = new GameRandom(0);
+		random.state = state & MASK;
+		return random;
+	}
+
+	public long getState() {
+		return state;
+	}
+
+	@Override
+	public void setSeed(long seed) {
+		super.setSeed(seed);
+		state = (seed ^ MULTIPLIER) & MASK;
+	}
+
+	@Override
+	protected int next(int bits) {
+		state = (state * MULTIPLIER + ADDEND) & MASK;
+		return (int) (state >>> (48 - bits));
+	}
+}
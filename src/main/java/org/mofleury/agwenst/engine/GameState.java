@@ -0,0 +1,331 @@
+package org.mofleury.agwenst.engine;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.mofleury.agwenst.domain.live.CardMultiset;
+import org.mofleury.agwenst.domain.live.EngagedCard;
+import org.mofleury.agwenst.domain.live.Row;
+import org.mofleury.agwenst.domain.still.Card;
+import org.mofleury.agwenst.domain.still.CardCatalog;
+import org.mofleury.agwenst.domain.still.CardType;
+import org.mofleury.agwenst.domain.still.Player;
+
+import lombok.Getter;
+
+/**
+ * Immutable version of a {@link Game}, as published after each move, see {@link Game#getState()}.
+ * <p>
+ * A version shares with the previous one every row, hand and deck the move did not change, so that
+ * publishing a move only copies the row and the hand it touched. Being immutable, a version can be read from
+ * any thread while the game goes on, and any number of games can branch from it, see
+ * {@link Game#branch(GameState)}.
+ */
+public final class GameState {
+
+	@Getter
+	private final long version;
+
+	// shared with the game, which never changes them
+	@Getter
+	private final List<Player> players;
+	@Getter
+	private final List<Player> shuffledPlayers;
+	final GameRandom rand;
+
+	@Getter
+	private final int roundCounter;
+	private final int[] victories;
+
+	@Getter
+	private final int currentSeat;
+	private final int passedMask;
+
+	private final Cards[] hands;
+	private final Cards[] decks;
+
+	// in the order they were played
+	private final Card[] specialCards;
+	// indexed by seat * Game.ROW_COUNT + row index
+	private final RowState[] rows;
+	private final int[] scores;
+
+	@Getter
+	private final long hash;
+
+	private GameState(long version, Game game, Cards[] hands, Cards[] decks, Card[] specialCards,
+			RowState[] rows) {
+		Round round = game.getRound();
+		this.version = version;
+		players = game.getPlayers();
+		shuffledPlayers = game.getShuffledPlayers();
+		rand = game.getRand();
+		roundCounter = game.getRoundCounter();
+		victories = new int[players.size()];
+		scores = new int[players.size()];
+		for (int seat = 0; seat < players.size(); seat++) {
+			victories[seat] = game.getVictories(seat);
+			scores[seat] = round.getScore(seat);
+		}
+		currentSeat = round.getCurrentSeat();
+		passedMask = round.passedMask();
+		this.hands = hands;
+		this.decks = decks;
+		this.specialCards = specialCards;
+		this.rows = rows;
+		hash = game.getHash();
+	}
+
+	/**
+	 * @return a version of a game sharing nothing with the previous ones
+	 */
+	static GameState of(Game game, long version) {
+		int seats = game.getPlayers()
+				.size();
+		Cards[] hands = new Cards[seats];
+		Cards[] decks = new Cards[seats];
+		RowState[] rows = new RowState[seats * Game.ROW_COUNT];
+		for (int seat = 0; seat < seats; seat++) {
+			hands[seat] = Cards.of(game.getHand(seat));
+			decks[seat] = Cards.of(game.getDeck(seat));
+			for (int r = 0; r < Game.ROW_COUNT; r++) {
+				rows[seat * Game.ROW_COUNT + r] = RowState.of(game.getRound()
+						.getRow(seat, r));
+			}
+		}
+		return new GameState(version, game, hands, decks, specialCards(game.getRound()), rows);
+	}
+
+	/**
+	 * @return the version following a move of the game, or its undoing
+	 * @param seat
+	 *            the seat that moved
+	 * @param card
+	 *            the card played or taken back, null for a pass
+	 * @param roundChanged
+	 *            whether the game is in another round than this version
+	 */
+	GameState next(Game game, int seat, Card card, boolean roundChanged) {
+		Round round = game.getRound();
+		Cards[] nextHands = hands;
+		RowState[] nextRows = rows;
+		if (card != null) {
+			nextHands = hands.clone();
+			nextHands[seat] = Cards.of(game.getHand(seat));
+		}
+		if (roundChanged) {
+			nextRows = new RowState[rows.length];
+			for (int i = 0; i < rows.length; i++) {
+				nextRows[i] = RowState.of(round.getRow(i / Game.ROW_COUNT, i % Game.ROW_COUNT));
+			}
+		} else if (card != null) {
+			int rowIndex = card.getTargetRow() - 1;
+			if (card.getType()
+					.equals(CardType.UNIT)) {
+				nextRows = rows.clone();
+				nextRows[seat * Game.ROW_COUNT + rowIndex] = RowState.of(round.getRow(seat, rowIndex));
+			} else if (rowIndex >= 0 && rowIndex < Game.ROW_COUNT) {
+				nextRows = rows.clone();
+				for (int s = 0; s < players.size(); s++) {
+					nextRows[s * Game.ROW_COUNT + rowIndex] = RowState.of(round.getRow(s, rowIndex));
+				}
+			}
+		}
+		Card[] nextSpecials = specialCards;
+		if (roundChanged || card != null && !card.getType()
+				.equals(CardType.UNIT)) {
+			nextSpecials = specialCards(round);
+		}
+		return new GameState(version + 1, game, nextHands, decks, nextSpecials, nextRows);
+	}
+
+	private static Card[] specialCards(Round round) {
+		return round.getSpecialCards()
+				.toArray(new Card[0]);
+	}
+
+	public int getVictories(int seat) {
+		return victories[seat];
+	}
+
+	public boolean hasPassed(int seat) {
+		return (passedMask & 1 << seat) != 0;
+	}
+
+	public Cards getHand(int seat) {
+		return hands[seat];
+	}
+
+	public Cards getDeck(int seat) {
+		return decks[seat];
+	}
+
+	public List<Card> getSpecialCards() {
+		return Collections.unmodifiableList(Arrays.asList(specialCards));
+	}
+
+	public RowState getRow(int seat, int rowIndex) {
+		return rows[seat * Game.ROW_COUNT + rowIndex];
+	}
+
+	public int getScore(int seat) {
+		return scores[seat];
+	}
+
+	/**
+	 * @return the seat that won two rounds, -1 while there is none
+	 */
+	public int getWinnerSeat() {
+		for (int seat = 0; seat < victories.length; seat++) {
+			if (victories[seat] == 2) {
+				return seat;
+			}
+		}
+		return -1;
+	}
+
+	public boolean gameOver() {
+		return getWinnerSeat() >= 0 || roundCounter == 3;
+	}
+
+	/**
+	 * Cards of a hand or a deck, as counts per {@link CardCatalog} id.
+	 */
+	public static final class Cards {
+
+		private final int[] counts;
+		// distinct ids present, in the order of the multiset they were taken from
+		private final int[] distinct;
+		private final int size;
+
+		private Cards(int[] counts, int[] distinct, int size) {
+			this.counts = counts;
+			this.distinct = distinct;
+			this.size = size;
+		}
+
+		static Cards of(CardMultiset cards) {
+			int[] distinct = new int[cards.distinctCount()];
+			int length = 0;
+			for (int i = 0; i < distinct.length; i++) {
+				distinct[i] = cards.distinctId(i);
+				length = Math.max(length, distinct[i] + 1);
+			}
+			int[] counts = new int[length];
+			for (int id : distinct) {
+				counts[id] = cards.count(id);
+			}
+			return new Cards(counts, distinct, cards.size());
+		}
+
+		public int size() {
+			return size;
+		}
+
+		public boolean isEmpty() {
+			return size == 0;
+		}
+
+		public int count(int id) {
+			return id < counts.length ? counts[id] : 0;
+		}
+
+		public int distinctCount() {
+			return distinct.length;
+		}
+
+		public int distinctId(int index) {
+			return distinct[index];
+		}
+
+		/**
+		 * @return the cards, copies of a card being next to each other
+		 */
+		public List<Card> getCards() {
+			CardCatalog catalog = CardCatalog.getInstance();
+			return new AbstractList<Card>() {
+				@Override
+				public Card get(int index) {
+					for (int id : distinct) {
+						index -= counts[id];
+						if (index < 0) {
+							return catalog.get(id);
+						}
+					}
+					throw new IndexOutOfBoundsException("No card at index " + index);
+				}
+
+				@Override
+				public int size() {
+					return size;
+				}
+			};
+		}
+
+		void addTo(CardMultiset cards) {
+			for (int id : distinct) {
+				for (int c = counts[id]; c > 0; c--) {
+					cards.add(id);
+				}
+			}
+		}
+	}
+
+	/**
+	 * A row with the current value of each of its cards.
+	 */
+	public static final class RowState {
+
+		static final RowState EMPTY = new RowState(null, new Card[0], new int[0], 0);
+
+		/**
+		 * null when the row has none
+		 */
+		@Getter
+		private final Card modifier;
+		private final Card[] cards;
+		private final int[] values;
+		@Getter
+		private final int score;
+
+		private RowState(Card modifier, Card[] cards, int[] values, int score) {
+			this.modifier = modifier;
+			this.cards = cards;
+			this.values = values;
+			this.score = score;
+		}
+
+		static RowState of(Row row) {
+			List<EngagedCard> engaged = row.getCards();
+			if (engaged.isEmpty() && row.getModifier() == null) {
+				return EMPTY;
+			}
+			Card[] cards = new Card[engaged.size()];
+			int[] values = new int[engaged.size()];
+			for (int i = 0; i < cards.length; i++) {
+				cards[i] = engaged.get(i)
+						.getCard();
+				values[i] = engaged.get(i)
+						.getCurrentValue();
+			}
+			return new RowState(row.getModifier() == null ? null
+					: row.getModifier()
+							.getCard(),
+					cards, values, row.getScore());
+		}
+
+		public int getCardCount() {
+			return cards.length;
+		}
+
+		public Card getCard(int index) {
+			return cards[index];
+		}
+
+		public int getValue(int index) {
+			return values[index];
+		}
+	}
+}
@@ -1,150 +1,438 @@
 package org.mofleury.agwenst.engine;
 
-import static java.util.stream.Collectors.toMap;
-import static java.util.stream.IntStream.range;
-
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 import org.mofleury.agwenst.domain.live.EngagedCard;
 import org.mofleury.agwenst.domain.live.Row;
 import org.mofleury.agwenst.domain.still.Card;
 import org.mofleury.agwenst.domain.still.CardType;
+import org.mofleury.agwenst.domain.still.Effect;
 import org.mofleury.agwenst.domain.still.Player;
+import org.mofleury.agwenst.metrics.EngineMetrics;
 
 import lombok.Getter;
 
-@Getter
 public class Round {
 
 	private static final Comparator<Card> SPECIAL_CARD_SORTER = Comparator.comparing(c -> c.getEffect()
 			.map(e -> e.getPriority())
 			.orElse(0));
 
+	@Getter
 	private final List<Player> players;
 
-	private final Map<Player, Map<Integer, Row>> rows;
+	// indexed by [seat][row index], row index being the card target row minus one
+	private final Row[][] board;
+	// effects of the special cards and of the row modifier, recompiled when they change
+	private final RowPipeline[][] pipelines;
+
+	private final boolean[] passed;
 
-	private final Map<Player, Boolean> passed;
+	private final int[] scores;
 
-	private Player currentPlayer;
+	@Getter
+	private int currentSeat;
 
+	@Getter
 	private final List<Card> specialCards;
 
+	private final List<Card> sortedSpecialCards;
+
+	// additive Zobrist hash of the cards on the rows and of the special cards
+	private long cardsHash;
+
+	// where the timers are recorded, null for the rounds of games that are not counted, see Game.setMetrics
+	private EngineMetrics metrics;
+
 	public Round(List<Player> players, Player currentPlayer) {
+		this(players, seatOf(players, currentPlayer));
+	}
+
+	public Round(List<Player> players, int currentSeat) {
 		this.players = players;
-		this.currentPlayer = currentPlayer;
+		this.currentSeat = currentSeat;
 
 		specialCards = new ArrayList<>();
-		rows = buildRows();
-		passed = players.stream()
-				.collect(toMap(p -> p, p -> false));
+		sortedSpecialCards = new ArrayList<>();
+		board = buildBoard(players.size());
+		pipelines = new RowPipeline[players.size()][Game.ROW_COUNT];
+		for (RowPipeline[] seatPipelines : pipelines) {
+			Arrays.fill(seatPipelines, RowPipeline.IDENTITY);
+		}
+		scores = new int[players.size()];
+		passed = new boolean[players.size()];
+	}
 
+	/**
+	 * Deep copy of the round, sharing only the immutable cards.
+	 */
+	public Round(Round other) {
+		players = other.players;
+		currentSeat = other.currentSeat;
+
+		specialCards = new ArrayList<>(other.specialCards);
+		sortedSpecialCards = new ArrayList<>(other.sortedSpecialCards);
+		board = new Row[other.board.length][Game.ROW_COUNT];
+		pipelines = new RowPipeline[other.board.length][];
+		for (int seat = 0; seat < board.length; seat++) {
+			for (int r = 0; r < Game.ROW_COUNT; r++) {
+				board[seat][r] = other.board[seat][r].copy();
+			}
+			pipelines[seat] = other.pipelines[seat].clone();
+		}
+		scores = other.scores.clone();
+		passed = other.passed.clone();
+		cardsHash = other.cardsHash;
 	}
 
-	private Map<Player, Map<Integer, Row>> buildRows() {
-		return players.stream()
-				.collect(toMap(p -> p, p -> range(1, 4).boxed()
-						.collect(Collectors.toMap(rid -> rid, rid -> new Row()))));
+	private static Row[][] buildBoard(int seatCount) {
+		Row[][] board = new Row[seatCount][Game.ROW_COUNT];
+		for (int seat = 0; seat < seatCount; seat++) {
+			for (int r = 0; r < Game.ROW_COUNT; r++) {
+				board[seat][r] = new Row();
+			}
+		}
+		return board;
 	}
 
-	public boolean hasPassed(Player p) {
-		return passed.get(p) == true;
+	static int seatOf(List<Player> players, Player p) {
+		for (int seat = 0; seat < players.size(); seat++) {
+			if (players.get(seat) == p) {
+				return seat;
+			}
+		}
+		int seat = players.indexOf(p);
+		if (seat < 0) {
+			throw new IllegalArgumentException("Player " + p + " is not part of this round");
+		}
+		return seat;
 	}
 
-	public void swapPlayerIfPossible() {
-		if (passed.get(getOtherPlayer()) == false) {
-			currentPlayer = getOtherPlayer();
+	public int seatOf(Player p) {
+		return seatOf(players, p);
+	}
+
+	/**
+	 * @return a read-only view of the board, keyed by player then by target row (1 based)
+	 */
+	public Map<Player, Map<Integer, Row>> getRows() {
+		Map<Player, Map<Integer, Row>> view = new HashMap<>();
+		for (int seat = 0; seat < players.size(); seat++) {
+			Map<Integer, Row> rows = new LinkedHashMap<>();
+			for (int r = 0; r < Game.ROW_COUNT; r++) {
+				rows.put(r + 1, board[seat][r]);
+			}
+			view.put(players.get(seat), Collections.unmodifiableMap(rows));
 		}
+		return Collections.unmodifiableMap(view);
+	}
+
+	public Row getRow(int seat, int rowIndex) {
+		return board[seat][rowIndex];
+	}
+
+	public Row getRow(Player p, int rowIndex) {
+		return getRow(seatOf(p), rowIndex);
+	}
+
+	public Player getCurrentPlayer() {
+		return players.get(currentSeat);
+	}
+
+	public int getOtherSeat() {
+		return 1 - currentSeat;
 	}
 
 	public Player getOtherPlayer() {
-		return players.stream()
-				.filter(p -> p != currentPlayer)
-				.findAny()
-				.get();
+		return players.get(getOtherSeat());
+	}
+
+	public boolean hasPassed(int seat) {
+		return passed[seat];
+	}
+
+	public boolean hasPassed(Player p) {
+		return hasPassed(seatOf(p));
+	}
+
+	public void swapPlayerIfPossible() {
+		if (!passed[getOtherSeat()]) {
+			currentSeat = getOtherSeat();
+		}
 	}
 
 	public void pass() {
-		passed.put(currentPlayer, true);
+		passed[currentSeat] = true;
 
 		swapPlayerIfPossible();
 	}
 
+	long getCardsHash() {
+		return cardsHash;
+	}
+
+	int passedMask() {
+		int mask = 0;
+		for (int seat = 0; seat < passed.length; seat++) {
+			if (passed[seat]) {
+				mask |= 1 << seat;
+			}
+		}
+		return mask;
+	}
+
+	/**
+	 * Sets whose turn it is and who passed, for instance when loading a saved game.
+	 */
+	public void setTurn(int currentSeat, boolean[] passed) {
+		this.currentSeat = currentSeat;
+		System.arraycopy(passed, 0, this.passed, 0, this.passed.length);
+	}
+
+	/**
+	 * Puts back the current seat and pass flags as they were before a move.
+	 */
+	void restore(int currentSeat, int passedMask) {
+		this.currentSeat = currentSeat;
+		for (int seat = 0; seat < passed.length; seat++) {
+			passed[seat] = (passedMask & 1 << seat) != 0;
+		}
+	}
+
 	public boolean hasEnded() {
-		return passed.values()
-				.stream()
-				.allMatch(passed -> passed == true);
+		for (boolean p : passed) {
+			if (!p) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public int getScore(int seat) {
+		return scores[seat];
+	}
+
+	void setMetrics(EngineMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	private boolean isTimed() {
+		// metrics first, so that uncounted rounds never load EngineMetrics
+		return metrics != null && EngineMetrics.TIMERS_ENABLED;
+	}
+
+	public int getScore(Player p) {
+		return getScore(seatOf(p));
+	}
+
+	public int getScore(int seat, int rowIndex) {
+		return board[seat][rowIndex].getScore();
 	}
 
 	public Map<Player, Integer> computeScores() {
+		boolean timed = isTimed();
+		long start = timed ? System.nanoTime() : 0;
 
 		Map<Player, Integer> scores = new HashMap<>();
-		rows.forEach((p, rs) -> {
-			int total = rs.values()
-					.stream()
-					.map(r -> r.getCards()
-							.stream()
-							.mapToInt(EngagedCard::getCurrentValue)
-							.sum())
-					.mapToInt(Integer::intValue)
-					.sum();
-			scores.put(p, total);
-		});
+		for (int seat = 0; seat < players.size(); seat++) {
+			scores.put(players.get(seat), getScore(seat));
+		}
 
+		if (timed) {
+			metrics.getComputeScores()
+					.record(System.nanoTime() - start);
+		}
 		return scores;
 	}
 
+	/**
+	 * @return the seat with the highest score, the first seat winning ties
+	 */
+	public int findWinnerSeat() {
+		int winner = 0;
+		for (int seat = 1; seat < scores.length; seat++) {
+			if (scores[seat] > scores[winner]) {
+				winner = seat;
+			}
+		}
+		return winner;
+	}
+
 	public Optional<Player> findWinner() {
-		return computeScores().entrySet()
-				.stream()
-				.max(Comparator.comparing(e -> e.getValue()))
-				.map(e -> e.getKey());
+		return Optional.of(players.get(findWinnerSeat()));
 	}
 
 	public void playCard(Card card) {
+		playCard(currentSeat, card);
+	}
+
+	/**
+	 * Puts a card on the board for a seat, without changing turns, for instance when loading a saved game.
+	 * Special cards are not tied to a seat.
+	 */
+	public void playCard(int seat, Card card) {
+		boolean timed = isTimed();
+		long start = timed ? System.nanoTime() : 0;
+
+		doPlayCard(seat, card);
+
+		if (timed) {
+			metrics.getPlayCard()
+					.record(System.nanoTime() - start);
+		}
+	}
+
+	private void doPlayCard(int seat, Card card) {
+		int rowIndex = card.getTargetRow() - 1;
 		if (card.getType()
 				.equals(CardType.UNIT)) {
-			rows.get(currentPlayer)
-					.get(card.getTargetRow())
-					.getCards()
+			Row row = board[seat][rowIndex];
+			row.getCards()
 					.add(new EngagedCard(card));
+			cardsHash += Zobrist.cardKey(card.getId(), Zobrist.rowZone(seat, rowIndex));
+			adjustRowStrengths(seat, rowIndex);
 		} else {
 			specialCards.add(card);
+			insertSorted(card);
+			cardsHash += Zobrist.cardKey(card.getId(), Zobrist.SPECIAL_ZONE);
+			if (rowIndex >= 0 && rowIndex < Game.ROW_COUNT) {
+				for (int s = 0; s < board.length; s++) {
+					compilePipeline(s, rowIndex);
+					adjustRowStrengths(s, rowIndex);
+				}
+			}
 		}
+	}
 
-		adjustCardStrengths();
+	/**
+	 * Reverts {@link #playCard(Card)}, the card being the last one played by the given seat.
+	 */
+	void unplayCard(Card card, int seat) {
+		int rowIndex = card.getTargetRow() - 1;
+		if (card.getType()
+				.equals(CardType.UNIT)) {
+			List<EngagedCard> cards = board[seat][rowIndex].getCards();
+			cards.remove(cards.size() - 1);
+			cardsHash -= Zobrist.cardKey(card.getId(), Zobrist.rowZone(seat, rowIndex));
+			adjustRowStrengths(seat, rowIndex);
+		} else {
+			specialCards.remove(specialCards.size() - 1);
+			cardsHash -= Zobrist.cardKey(card.getId(), Zobrist.SPECIAL_ZONE);
+			for (int i = sortedSpecialCards.size() - 1; i >= 0; i--) {
+				if (sortedSpecialCards.get(i) == card) {
+					sortedSpecialCards.remove(i);
+					break;
+				}
+			}
+			if (rowIndex >= 0 && rowIndex < Game.ROW_COUNT) {
+				for (int s = 0; s < board.length; s++) {
+					compilePipeline(s, rowIndex);
+					adjustRowStrengths(s, rowIndex);
+				}
+			}
+		}
 	}
 
-	private void adjustCardStrengths() {
+	private void insertSorted(Card card) {
+		// keep insertion order among equal priorities, as a stable sort would
+		int index = sortedSpecialCards.size();
+		while (index > 0 && SPECIAL_CARD_SORTER.compare(sortedSpecialCards.get(index - 1), card) > 0) {
+			index--;
+		}
+		sortedSpecialCards.add(index, card);
+	}
 
-		// reset values
-		rows.forEach((p, rows) -> rows.forEach((rid, row) -> row.getCards()
-				.forEach(c -> c.setCurrentValue(c.getCard()
-						.getValue()))));
+	/**
+	 * Sets the card modifying a row of a seat, whose effect applies on top of the special cards of that row.
+	 *
+	 * @param card
+	 *            the modifier, null to remove it
+	 */
+	public void setModifier(int seat, int rowIndex, Card card) {
+		Row row = board[seat][rowIndex];
+		if (row.getModifier() != null) {
+			cardsHash -= Zobrist.cardKey(row.getModifier()
+					.getCard()
+					.getId(), Zobrist.rowZone(seat, rowIndex));
+		}
+		row.setModifier(card == null ? null : new EngagedCard(card));
+		if (card != null) {
+			cardsHash += Zobrist.cardKey(card.getId(), Zobrist.rowZone(seat, rowIndex));
+		}
+		compilePipeline(seat, rowIndex);
+		adjustRowStrengths(seat, rowIndex);
+	}
 
-		// readjust values
-		specialCards.stream()
-				.sorted(SPECIAL_CARD_SORTER)
-				.forEach(spc -> {
-					rows.forEach((p, rows) -> rows.forEach((rid, row) -> row.getCards()
-							.forEach(c -> applySpecialCard(spc, rid, c))));
-				});
+	/**
+	 * Recompiles every row pipeline and recomputes all strengths from scratch.
+	 */
+	void adjustCardStrengths() {
+		for (int seat = 0; seat < board.length; seat++) {
+			for (int r = 0; r < Game.ROW_COUNT; r++) {
+				compilePipeline(seat, r);
+				adjustRowStrengths(seat, r);
+			}
+		}
+	}
 
+	private void compilePipeline(int seat, int rowIndex) {
+		int targetRow = rowIndex + 1;
+		EngagedCard modifier = board[seat][rowIndex].getModifier();
+		Card modifierCard = modifier == null || !modifier.getCard()
+				.getEffect()
+				.isPresent() ? null : modifier.getCard();
+
+		List<Effect> effects = new ArrayList<>();
+		for (int s = 0; s < sortedSpecialCards.size(); s++) {
+			Card spc = sortedSpecialCards.get(s);
+			if (modifierCard != null && SPECIAL_CARD_SORTER.compare(spc, modifierCard) > 0) {
+				effects.add(modifierCard.getEffect()
+						.get());
+				modifierCard = null;
+			}
+			if (spc.getTargetRow() == targetRow && spc.getEffect()
+					.isPresent()) {
+				effects.add(spc.getEffect()
+						.get());
+			}
+		}
+		if (modifierCard != null) {
+			effects.add(modifierCard.getEffect()
+					.get());
+		}
+		pipelines[seat][rowIndex] = RowPipeline.compile(effects);
 	}
 
-	private void applySpecialCard(Card spc, Integer rowId, EngagedCard c) {
-		if (spc.getTargetRow() == rowId) {
-			spc.getEffect()
-					.ifPresent(e -> {
-						int newValue = e.apply(c.getCurrentValue());
-						c.setCurrentValue(newValue);
-					});
+	private void adjustRowStrengths(int seat, int rowIndex) {
+		boolean timed = isTimed();
+		long start = timed ? System.nanoTime() : 0;
+
+		Row row = board[seat][rowIndex];
+		List<EngagedCard> cards = row.getCards();
+		RowPipeline pipeline = pipelines[seat][rowIndex];
+
+		int rowScore = 0;
+		for (int i = 0; i < cards.size(); i++) {
+			EngagedCard c = cards.get(i);
+			int value = pipeline.apply(c.getCard()
+					.getValue());
+			c.setCurrentValue(value);
+			rowScore += value;
+		}
+		scores[seat] += rowScore - row.getScore();
+		row.setScore(rowScore);
+
+		if (timed) {
+			metrics.getAdjustCardStrengths()
+					.record(System.nanoTime() - start);
 		}
 	}
 
@@ -0,0 +1,49 @@
+package org.mofleury.agwenst.engine;
+
+import java.util.List;
+
+import org.mofleury.agwenst.domain.still.Effect;
+
+/**
+ * The effects applying to a row, composed in priority order into a single value transform. Values of the
+ * small card value domain are looked up in a precomputed table, others go through the effects one by one.
+ * Immutable, so that copies of a round can share it.
+ */
+final class RowPipeline {
+
+	static final int VALUE_DOMAIN = 32;
+
+	static final RowPipeline IDENTITY = new RowPipeline(new Effect[0]);
+
+	private final Effect[] effects;
+	private final int[] table = new int[VALUE_DOMAIN];
+
+	private RowPipeline(Effect[] effects) {
+		this.effects = effects;
+		for (int v = 0; v < VALUE_DOMAIN; v++) {
+			table[v] = applyEach(v);
+		}
+	}
+
+	/**
+	 * @param effects
+	 *            effects sorted by priority
+	 */
+	static RowPipeline compile(List<Effect> effects) {
+		return effects.isEmpty() ? IDENTITY : new RowPipeline(effects.toArray(new Effect[effects.size()]));
+	}
+
+	int apply(int value) {
+		if (value >= 0 && value < VALUE_DOMAIN) {
+			return table[value];
+		}
+		return applyEach(value);
+	}
+
+	private int applyEach(int value) {
+		for (Effect e : effects) {
+			value = e.apply(value);
+		}
+		return value;
+	}
+}
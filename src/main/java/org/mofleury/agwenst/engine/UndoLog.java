@@ -0,0 +1,94 @@
+package org.mofleury.agwenst.engine;
+
+import java.util.Arrays;
+
+/**
+ * Stack of the moves played on a game, each entry holding just enough to revert it exactly.
+ * <p>
+ * An entry is a packed int, holding the played card id, plus the round when the move ended one. Storage
+ * grows by doubling and is reused, so recording and undoing do not allocate in steady state.
+ */
+class UndoLog {
+
+	private static final int PLAY = 1;
+	private static final int ROUND_ENDED = 1 << 1;
+	private static final int PREVIOUS_SEAT_SHIFT = 2;
+	private static final int PASSED_SHIFT = 3;
+	private static final int WINNER_SHIFT = 5;
+	private static final int CARD_SHIFT = 8;
+
+	private int[] codes = new int[64];
+	private Round[] endedRounds = new Round[64];
+
+	private int size;
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @param cardId
+	 *            catalog id of the played card, -1 for a pass
+	 * @param previousSeat
+	 *            the seat that moved
+	 * @param passedMask
+	 *            pass flags of the round before the move, one bit per seat
+	 */
+	void push(int cardId, int previousSeat, int passedMask) {
+		if (size == codes.length) {
+			codes = Arrays.copyOf(codes, size * 2);
+			endedRounds = Arrays.copyOf(endedRounds, size * 2);
+		}
+		codes[size] = (cardId >= 0 ? PLAY | cardId << CARD_SHIFT : 0) | previousSeat << PREVIOUS_SEAT_SHIFT
+				| passedMask << PASSED_SHIFT;
+		endedRounds[size] = null;
+		size++;
+	}
+
+	/**
+	 * Marks the last pushed move as having ended the given round.
+	 */
+	void roundEnded(Round round, int winnerSeat) {
+		codes[size - 1] |= ROUND_ENDED | (winnerSeat + 1) << WINNER_SHIFT;
+		endedRounds[size - 1] = round;
+	}
+
+	void pop() {
+		size--;
+		endedRounds[size] = null;
+	}
+
+	void clear() {
+		while (size > 0) {
+			pop();
+		}
+	}
+
+	boolean isPlay() {
+		return (codes[size - 1] & PLAY) != 0;
+	}
+
+	boolean hasEndedRound() {
+		return (codes[size - 1] & ROUND_ENDED) != 0;
+	}
+
+	int previousSeat() {
+		return codes[size - 1] >>> PREVIOUS_SEAT_SHIFT & 1;
+	}
+
+	int passedMask() {
+		return codes[size - 1] >>> PASSED_SHIFT & 3;
+	}
+
+	int winnerSeat() {
+		return (codes[size - 1] >>> WINNER_SHIFT & 3) - 1;
+	}
+
+	int cardId() {
+		return codes[size - 1] >>> CARD_SHIFT;
+	}
+
+	Round endedRound() {
+		return endedRounds[size - 1];
+	}
+}
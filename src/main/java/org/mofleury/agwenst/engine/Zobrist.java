@@ -0,0 +1,52 @@
+package org.mofleury.agwenst.engine;
+
+/**
+ * 64 bit keys for hashing game positions.
+ * <p>
+ * Hands, rows and special cards are multisets in which identical copies of a card are interchangeable, so
+ * their keys are combined by addition rather than xor (two copies must not cancel out). Position flags (turn,
+ * pass flags, victories, round counter) are mapped to keys from their current values, so a position hash is
+ * <code>sum of card keys ^ flags key</code>, which can be maintained incrementally and reverted in any order.
+ */
+public final class Zobrist {
+
+	// zone of a card: hand of each seat, each row of each seat, special cards
+	static final int SPECIAL_ZONE = 2 + 2 * Game.ROW_COUNT;
+
+	private static final long HAND_SIZE_SALT = 0x6a09e667f3bcc909L;
+	private static final long FLAGS_SALT = 0xbb67ae8584caa73bL;
+
+	private Zobrist() {
+	}
+
+	static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	static int handZone(int seat) {
+		return seat;
+	}
+
+	static int rowZone(int seat, int rowIndex) {
+		return 2 + seat * Game.ROW_COUNT + rowIndex;
+	}
+
+	/**
+	 * @param cardId
+	 *            catalog id of the card, identical for every copy of the same card
+	 */
+	static long cardKey(int cardId, int zone) {
+		return mix((cardId + 1L) * 0x9e3779b97f4a7c15L + zone);
+	}
+
+	static long handSizeKey(int seat, int size) {
+		return mix(HAND_SIZE_SALT + seat * 64 + size);
+	}
+
+	static long flagsKey(int currentSeat, int passedMask, int roundCounter, int victories0, int victories1) {
+		return mix(FLAGS_SALT + (((roundCounter * 4 + victories0) * 4 + victories1) * 4 + passedMask) * 2
+				+ currentSeat);
+	}
+}
@@ -0,0 +1,114 @@
+package org.mofleury.agwenst.events;
+
+import java.io.Closeable;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Reads the events of an {@link EventRing} in order and hands them to a handler, either when polled or on a
+ * thread of its own. A consumer only sees the events published after its creation.
+ */
+public class EventConsumer implements Runnable, Closeable {
+
+	private static final int SPINS = 100;
+	private static final int YIELDS = 100;
+	private static final long PARK_NANOS = 100_000;
+
+	private final EventRing ring;
+	private final GameEventHandler handler;
+	private final GameEvent event = new GameEvent();
+
+	// sequence of the next event to read
+	private long next;
+	private volatile long lostCount;
+	private volatile boolean running = true;
+	// started by start(), null otherwise
+	private Thread thread;
+
+	public EventConsumer(EventRing ring, GameEventHandler handler) {
+		this.ring = ring;
+		this.handler = handler;
+		next = ring.getCursor() + 1;
+	}
+
+	/**
+	 * Handles the events published since the last call. Must not be called concurrently with itself or with
+	 * {@link #run()}.
+	 *
+	 * @return the number of events handled
+	 */
+	public int poll() {
+		int handled = 0;
+		long cursor = ring.getCursor();
+		while (next <= cursor) {
+			if (ring.read(next, event)) {
+				handler.onEvent(event);
+				next++;
+				handled++;
+			} else {
+				// overrun: skip to the oldest event still in the ring
+				cursor = ring.getCursor();
+				long oldest = ring.getOldest();
+				long lost = oldest - next;
+				lostCount += lost;
+				next = oldest;
+				handler.eventsLost(lost);
+			}
+		}
+		return handled;
+	}
+
+	/**
+	 * @return the number of events overwritten before this consumer could read them
+	 */
+	public long getLostCount() {
+		return lostCount;
+	}
+
+	/**
+	 * Polls until closed, spinning, then yielding, then parking while there is nothing to read.
+	 */
+	@Override
+	public void run() {
+		int idle = 0;
+		while (running) {
+			if (poll() > 0) {
+				idle = 0;
+			} else if (idle < SPINS) {
+				idle++;
+			} else if (idle < SPINS + YIELDS) {
+				idle++;
+				Thread.yield();
+			} else {
+				LockSupport.parkNanos(PARK_NANOS);
+			}
+		}
+		poll();
+	}
+
+	/**
+	 * Runs this consumer on a new daemon thread.
+	 */
+	public Thread start(String name) {
+		thread = new Thread(this, name);
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+
+	/**
+	 * Stops {@link #run()} once it handled the events already published, waiting for it when started on a
+	 * thread of its own.
+	 */
+	@Override
+	public void close() {
+		running = false;
+		if (thread != null && thread != Thread.currentThread()) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread()
+						.interrupt();
+			}
+		}
+	}
+}
@@ -0,0 +1,115 @@
+package org.mofleury.agwenst.events;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Preallocated ring of game events, written by a single producer and read by any number of
+ * {@link EventConsumer}s.
+ * <p>
+ * The producer never waits: once the ring is full it overwrites the oldest events, and a consumer that fell
+ * that far behind skips ahead and is told how many events it lost. Each slot holds an event packed in two
+ * longs, guarded by its own sequence lock: the slot version is marked while the event is written and set to
+ * the event sequence afterwards, so that a reader racing with the producer sees a changed version and
+ * discards what it read. Publishing neither locks nor allocates.
+ * <p>
+ * Events can also be written one by one and committed together, consumers seeing none of them before the
+ * commit: a game commits the events of a move once the move is complete.
+ */
+public class EventRing {
+
+	// version, header, scores
+	private static final int SLOT_WIDTH = 3;
+
+	private final AtomicLongArray slots;
+	private final int mask;
+
+	// sequence of the last committed event, -1 before the first one
+	private final AtomicLong cursor = new AtomicLong(-1);
+	// sequence of the last written event, ahead of the cursor until committed
+	private final AtomicLong head = new AtomicLong(-1);
+	// owned by the producer
+	private long next;
+
+	/**
+	 * @param capacity
+	 *            number of events kept, rounded up to a power of two
+	 */
+	public EventRing(int capacity) {
+		int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+		slots = new AtomicLongArray(size * SLOT_WIDTH);
+		mask = size - 1;
+	}
+
+	public int getCapacity() {
+		return mask + 1;
+	}
+
+	/**
+	 * @return the sequence of the last published event, -1 if none
+	 */
+	public long getCursor() {
+		return cursor.get();
+	}
+
+	/**
+	 * @return the sequence of the oldest event not overwritten yet
+	 */
+	long getOldest() {
+		return Math.max(0, head.get() - mask);
+	}
+
+	/**
+	 * Publishes an event, committing it with the events written before. Must only be called from the producer
+	 * thread.
+	 */
+	public void publish(GameEvent.Type type, int seat, int cardId, int rowIndex, int roundCounter, int score0,
+			int score1) {
+		write(type, seat, cardId, rowIndex, roundCounter, score0, score1);
+		commit();
+	}
+
+	/**
+	 * Writes an event, which consumers only see once committed. Must only be called from the producer thread.
+	 */
+	public void write(GameEvent.Type type, int seat, int cardId, int rowIndex, int roundCounter, int score0,
+			int score1) {
+		long sequence = next++;
+		head.lazySet(sequence);
+		int base = (int) (sequence & mask) * SLOT_WIDTH;
+		// versions are offset by one so that the zeroed slots read as empty, and negated while written
+		slots.lazySet(base, -(sequence + 1));
+		slots.lazySet(base + 1, GameEvent.header(type, seat, cardId, rowIndex, roundCounter));
+		slots.lazySet(base + 2, GameEvent.scores(score0, score1));
+		slots.lazySet(base, sequence + 1);
+	}
+
+	/**
+	 * Makes the events written so far visible to the consumers. Must only be called from the producer thread.
+	 */
+	public void commit() {
+		cursor.lazySet(next - 1);
+	}
+
+	/**
+	 * Reads a published event.
+	 *
+	 * @param sequence
+	 *            sequence of the event, at most {@link #getCursor()}
+	 * @return false if the event was already overwritten
+	 */
+	boolean read(long sequence, GameEvent event) {
+		int base = (int) (sequence & mask) * SLOT_WIDTH;
+		long version = slots.get(base);
+		if (version != sequence + 1) {
+			return false;
+		}
+		long header = slots.get(base + 1);
+		long scores = slots.get(base + 2);
+		if (slots.get(base) != version) {
+			return false;
+		}
+		event.decode(sequence, header, scores);
+		return true;
+	}
+}
@@ -0,0 +1,89 @@
+package org.mofleury.agwenst.events;
+
+import java.util.Optional;
+
+import org.mofleury.agwenst.domain.still.Card;
+import org.mofleury.agwenst.domain.still.CardCatalog;
+
+import lombok.Getter;
+
+/**
+ * Something that happened to a game, as read from an {@link EventRing}. Instances are reused: a consumer
+ * decodes every event into the same object, which is only valid until the handler returns.
+ */
+@Getter
+public class GameEvent {
+
+	public enum Type {
+		/** a card was played by {@link #getSeat()} */
+		CARD_PLAYED,
+		/** the card values of a row of both seats changed, after a special card was played */
+		STRENGTHS_CHANGED,
+		/** {@link #getSeat()} passed */
+		PASSED,
+		/** {@link #getSeat()} played its last card, which counts as passing */
+		OUT_OF_CARDS,
+		/** a round was won by {@link #getSeat()}, the scores being the final scores of the round */
+		ROUND_ENDED,
+		/** the game was won by {@link #getSeat()}, -1 for a draw */
+		GAME_OVER,
+		/** the last move was taken back */
+		UNDONE,
+		/** another game replaced the one played, {@link #getSeat()} being its current seat */
+		GAME_LOADED;
+
+		private static final Type[] VALUES = values();
+	}
+
+	private long sequence;
+	private Type type;
+	private int seat;
+	// catalog id of the card played, -1 for none
+	private int cardId;
+	// index of the row whose strengths changed, -1 for none
+	private int rowIndex;
+	// rounds completed when the event happened
+	private int roundCounter;
+	private int score0;
+	private int score1;
+
+	/**
+	 * @return the round score of a seat right after the event
+	 */
+	public int getScore(int seat) {
+		return seat == 0 ? score0 : score1;
+	}
+
+	public Optional<Card> getCard() {
+		return cardId < 0 ? Optional.empty()
+				: Optional.of(CardCatalog.getInstance()
+						.get(cardId));
+	}
+
+	static long header(Type type, int seat, int cardId, int rowIndex, int roundCounter) {
+		return (long) type.ordinal() | (seat & 0xffL) << 8 | (rowIndex & 0xffL) << 16 | (roundCounter & 0xffL) << 24
+				| (cardId & 0xffffffffL) << 32;
+	}
+
+	static long scores(int score0, int score1) {
+		return score0 & 0xffffffffL | (long) score1 << 32;
+	}
+
+	void decode(long sequence, long header, long scores) {
+		this.sequence = sequence;
+		type = Type.VALUES[(int) (header & 0xff)];
+		seat = (byte) (header >> 8);
+		rowIndex = (byte) (header >> 16);
+		roundCounter = (int) (header >> 24 & 0xff);
+		cardId = (int) (header >> 32);
+		score0 = (int) scores;
+		score1 = (int) (scores >> 32);
+	}
+
+	@Override
+	public String toString() {
+		return "#" + sequence + " " + type + " seat " + seat + (cardId < 0 ? "" : " card " + cardId)
+				+ (rowIndex < 0 ? "" : " row " + rowIndex) + " round " + roundCounter + " scores " + score0 + "/"
+				+ score1;
+	}
+}
@@ -0,0 +1,19 @@
+package org.mofleury.agwenst.events;
+
+/**
+ * Handles the events read by an {@link EventConsumer}, on the thread of the consumer.
+ */
+public interface GameEventHandler {
+
+	/**
+	 * @param event
+	 *            reused for the next event, so it must not be kept
+	 */
+	void onEvent(GameEvent event);
+
+	/**
+	 * Called when the consumer fell so far behind that the producer overwrote events it had not read.
+	 */
+	default void eventsLost(long count) {
+	}
+}
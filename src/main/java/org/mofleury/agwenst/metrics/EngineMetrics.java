@@ -0,0 +1,191 @@
+package org.mofleury.agwenst.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import lombok.Getter;
+
+/**
+ * Counters and timers of the game engine, registered in the background as the
+ * org.mofleury.agwenst:type=EngineMetrics MBean unless the agwenst.jmx system property is false.
+ * <p>
+ * Counters and timers both cover the games attached with
+ * {@link org.mofleury.agwenst.engine.Game#setMetrics(EngineMetrics)}, which the console does for the games it
+ * plays, so that searches, simulations and benchmarks are neither counted nor timed. Timers cost two clock
+ * reads per call, a sizable share of a move, so they are only recorded when the agwenst.timers system
+ * property is true; the rounds of attached games check {@link #TIMERS_ENABLED} before reading the clock.
+ */
+public class EngineMetrics implements EngineMetricsMBean {
+
+	public static final boolean TIMERS_ENABLED = Boolean.getBoolean("agwenst.timers");
+
+	private static final EngineMetrics INSTANCE = new EngineMetrics();
+
+	static {
+		if (!"false".equals(System.getProperty("agwenst.jmx"))) {
+			// starting the platform MBean server takes longer than a short batch run, so it is done aside
+			Thread registration = new Thread(EngineMetrics::register, "metrics-registration");
+			registration.setDaemon(true);
+			registration.start();
+		}
+	}
+
+	private static void register() {
+		try {
+			ManagementFactory.getPlatformMBeanServer()
+					.registerMBean(INSTANCE, new ObjectName("org.mofleury.agwenst:type=EngineMetrics"));
+		} catch (JMException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private final LongAdder gamesStarted = new LongAdder();
+	private final LongAdder gamesFinished = new LongAdder();
+	private final LongAdder rounds = new LongAdder();
+	private final LongAdder cardsPlayed = new LongAdder();
+	private final LongAdder passes = new LongAdder();
+
+	@Getter
+	private final LatencyHistogram playCard = new LatencyHistogram();
+	@Getter
+	private final LatencyHistogram adjustCardStrengths = new LatencyHistogram();
+	@Getter
+	private final LatencyHistogram computeScores = new LatencyHistogram();
+
+	public static EngineMetrics getInstance() {
+		return INSTANCE;
+	}
+
+	public void gameStarted() {
+		gamesStarted.increment();
+	}
+
+	public void gameFinished() {
+		gamesFinished.increment();
+	}
+
+	public void roundEnded() {
+		rounds.increment();
+	}
+
+	public void cardPlayed() {
+		cardsPlayed.increment();
+	}
+
+	public void passed() {
+		passes.increment();
+	}
+
+	/**
+	 * Takes back the counts of a move that was undone.
+	 *
+	 * @param gameWasOver
+	 *            whether the move had finished the game
+	 */
+	public void moveUndone(boolean play, boolean roundHadEnded, boolean gameWasOver) {
+		if (play) {
+			cardsPlayed.decrement();
+		} else {
+			passes.decrement();
+		}
+		if (roundHadEnded) {
+			rounds.decrement();
+		}
+		if (gameWasOver) {
+			gamesFinished.decrement();
+		}
+	}
+
+	@Override
+	public long getGamesStarted() {
+		return gamesStarted.sum();
+	}
+
+	@Override
+	public long getGamesFinished() {
+		return gamesFinished.sum();
+	}
+
+	@Override
+	public long getRounds() {
+		return rounds.sum();
+	}
+
+	@Override
+	public long getCardsPlayed() {
+		return cardsPlayed.sum();
+	}
+
+	@Override
+	public long getPasses() {
+		return passes.sum();
+	}
+
+	@Override
+	public long getPlayCardP50() {
+		return playCard.getPercentile(0.5);
+	}
+
+	@Override
+	public long getPlayCardP99() {
+		return playCard.getPercentile(0.99);
+	}
+
+	@Override
+	public long getPlayCardMax() {
+		return playCard.getMax();
+	}
+
+	@Override
+	public long getAdjustCardStrengthsP50() {
+		return adjustCardStrengths.getPercentile(0.5);
+	}
+
+	@Override
+	public long getAdjustCardStrengthsP99() {
+		return adjustCardStrengths.getPercentile(0.99);
+	}
+
+	@Override
+	public long getAdjustCardStrengthsMax() {
+		return adjustCardStrengths.getMax();
+	}
+
+	@Override
+	public long getComputeScoresP50() {
+		return computeScores.getPercentile(0.5);
+	}
+
+	@Override
+	public long getComputeScoresP99() {
+		return computeScores.getPercentile(0.99);
+	}
+
+	@Override
+	public long getComputeScoresMax() {
+		return computeScores.getMax();
+	}
+
+	@Override
+	public void reset() {
+		gamesStarted.reset();
+		gamesFinished.reset();
+		rounds.reset();
+		cardsPlayed.reset();
+		passes.reset();
+		playCard.reset();
+		adjustCardStrengths.reset();
+		computeScores.reset();
+	}
+
+	@Override
+	public String toString() {
+		return "games started: " + getGamesStarted() + ", finished: " + getGamesFinished() + "\nrounds: "
+				+ getRounds() + ", cards played: " + getCardsPlayed() + ", passes: " + getPasses()
+				+ "\nRound.playCard: " + playCard + "\nadjustCardStrengths: " + adjustCardStrengths
+				+ "\ncomputeScores: " + computeScores;
+	}
+}
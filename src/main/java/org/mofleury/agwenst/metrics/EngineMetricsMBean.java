@@ -0,0 +1,37 @@
+package org.mofleury.agwenst.metrics;
+
+/**
+ * Management interface of {@link EngineMetrics}, durations being in nanoseconds.
+ */
+public interface EngineMetricsMBean {
+
+	long getGamesStarted();
+
+	long getGamesFinished();
+
+	long getRounds();
+
+	long getCardsPlayed();
+
+	long getPasses();
+
+	long getPlayCardP50();
+
+	long getPlayCardP99();
+
+	long getPlayCardMax();
+
+	long getAdjustCardStrengthsP50();
+
+	long getAdjustCardStrengthsP99();
+
+	long getAdjustCardStrengthsMax();
+
+	long getComputeScoresP50();
+
+	long getComputeScoresP99();
+
+	long getComputeScoresMax();
+
+	void reset();
+}
@@ -0,0 +1,80 @@
+package org.mofleury.agwenst.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of durations in power of two buckets: bucket i counts the values below 2^i and not below
+ * 2^(i-1). Recording is striped over the threads and does not allocate once the stripes exist; percentiles
+ * are only known up to their bucket.
+ */
+public class LatencyHistogram {
+
+	private static final int BUCKET_COUNT = 64;
+
+	private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	public LatencyHistogram() {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	public void record(long nanos) {
+		buckets[Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(Math.max(0, nanos)))].increment();
+		max.accumulate(nanos);
+	}
+
+	public long getCount() {
+		long count = 0;
+		for (LongAdder b : buckets) {
+			count += b.sum();
+		}
+		return count;
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * @param quantile
+	 *            between 0 and 1
+	 * @return an upper bound of the quantile, 0 when nothing was recorded
+	 */
+	public long getPercentile(double quantile) {
+		long[] counts = new long[BUCKET_COUNT];
+		long count = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			counts[i] = buckets[i].sum();
+			count += counts[i];
+		}
+		if (count == 0) {
+			return 0;
+		}
+
+		long rank = (long) Math.ceil(quantile * count);
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += counts[i];
+			if (seen >= Math.max(1, rank)) {
+				return Math.min(i == 0 ? 0 : (1L << i) - 1, getMax());
+			}
+		}
+		return getMax();
+	}
+
+	public void reset() {
+		for (LongAdder b : buckets) {
+			b.reset();
+		}
+		max.reset();
+	}
+
+	@Override
+	public String toString() {
+		return "count " + getCount() + ", p50 " + getPercentile(0.5) + " ns, p99 " + getPercentile(0.99)
+				+ " ns, max " + getMax() + " ns";
+	}
+}
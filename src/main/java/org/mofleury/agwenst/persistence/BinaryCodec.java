@@ -0,0 +1,60 @@
+package org.mofleury.agwenst.persistence;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import org.mofleury.agwenst.domain.still.Card;
+import org.mofleury.agwenst.domain.still.CardCatalog;
+import org.mofleury.agwenst.domain.still.CardType;
+import org.mofleury.agwenst.domain.still.Effect;
+
+/**
+ * Encoding of the values shared by the binary formats, on disk and on the wire.
+ * <p>
+ * Catalog ids only make sense within a process, so files carry their own table of card definitions and
+ * refer to cards by their index in that table.
+ */
+public final class BinaryCodec {
+
+	private BinaryCodec() {
+	}
+
+	public static void putString(ByteBuffer buffer, String s) {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		buffer.putShort((short) bytes.length);
+		buffer.put(bytes);
+	}
+
+	public static String getString(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getShort()];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	public static void putCard(ByteBuffer buffer, Card card) {
+		buffer.put((byte) card.getType()
+				.ordinal());
+		putString(buffer, card.getName());
+		buffer.putInt(card.getValue());
+		buffer.putInt(card.getTargetRow());
+		buffer.put((byte) (card.getEffect()
+				.isPresent() ? card.getEffect()
+						.get()
+						.ordinal() + 1 : 0));
+	}
+
+	/**
+	 * @return the card, interned in the catalog of this process
+	 */
+	public static Card getCard(ByteBuffer buffer) {
+		CardType type = CardType.values()[buffer.get()];
+		String name = getString(buffer);
+		int value = buffer.getInt();
+		int targetRow = buffer.getInt();
+		int effect = buffer.get();
+		return CardCatalog.getInstance()
+				.card(type, name, value, targetRow,
+						effect == 0 ? Optional.empty() : Optional.of(Effect.values()[effect - 1]));
+	}
+}
@@ -0,0 +1,202 @@
+package org.mofleury.agwenst.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.mofleury.agwenst.domain.still.Card;
+import org.mofleury.agwenst.domain.still.CardCatalog;
+import org.mofleury.agwenst.domain.still.InitialDeck;
+import org.mofleury.agwenst.domain.still.Player;
+import org.mofleury.agwenst.events.GameEvent;
+import org.mofleury.agwenst.events.GameEventHandler;
+
+/**
+ * Append-only binary record of a game, written through a memory-mapped file.
+ * <p>
+ * The header holds everything needed to deal the game again: the seed, the players and their initial decks
+ * in their original order. It is followed by one fixed-width record per move: the kind of move (play, pass
+ * or undo) on one byte, the seat that moved on one byte and, for plays, the card on two bytes, as an index in
+ * the card table of the header. The record count is kept up to date in the header, so a journal is readable
+ * at any time, even if the process died while writing it.
+ * <p>
+ * A journal is written from the events of the game, on the thread of an
+ * {@link org.mofleury.agwenst.events.EventConsumer}. Should the consumer lose events, the journal could not
+ * be replayed past them, so it ends with an incomplete record there, which {@link JournalReplay} reports.
+ *
+ * @see JournalReplay
+ */
+public class GameJournal implements GameEventHandler, Closeable {
+
+	static final int MAGIC = 0x41474a4c;
+	static final short VERSION = 1;
+
+	// magic, version, padding, record count, offset of the first record
+	static final int RECORD_COUNT_OFFSET = 8;
+	static final int RECORDS_OFFSET_OFFSET = 16;
+	static final int FIXED_HEADER_SIZE = 20;
+
+	static final int RECORD_SIZE = 4;
+
+	static final byte PLAY = 1;
+	static final byte PASS = 2;
+	static final byte UNDO = 3;
+	// last record of a journal that lost moves
+	static final byte INCOMPLETE = 4;
+
+	private static final int INITIAL_MAPPING = 1 << 16;
+
+	private final FileChannel channel;
+	private MappedByteBuffer buffer;
+
+	private final int recordsOffset;
+	private long recordCount;
+	// set once events were lost, the records then ending with INCOMPLETE
+	private boolean broken;
+
+	// journal card index for each catalog id, -1 for cards absent from the decks
+	private final int[] cardIndexes;
+
+	private GameJournal(FileChannel channel, ByteBuffer header, int[] cardIndexes) throws IOException {
+		this.channel = channel;
+		this.cardIndexes = cardIndexes;
+		this.recordsOffset = header.limit();
+
+		buffer = channel.map(MapMode.READ_WRITE, 0, Math.max(INITIAL_MAPPING, recordsOffset * 2));
+		buffer.put(header);
+	}
+
+	/**
+	 * Starts the journal of a game, which is then written by handing it the events of the game.
+	 */
+	public static GameJournal create(Path path, long seed, List<Player> players,
+			Map<Player, InitialDeck> initialDecks) throws IOException {
+
+		List<Card> table = new ArrayList<>();
+		int[] cardIndexes = new int[CardCatalog.getInstance()
+				.size()];
+		Arrays.fill(cardIndexes, -1);
+		for (Player p : players) {
+			for (Card c : initialDecks.get(p)
+					.getCards()) {
+				if (cardIndexes[c.getId()] < 0) {
+					cardIndexes[c.getId()] = table.size();
+					table.add(c);
+				}
+			}
+		}
+
+		ByteBuffer header = ByteBuffer.allocate(1 << 16);
+		header.putInt(MAGIC);
+		header.putShort(VERSION);
+		header.putShort((short) 0);
+		header.putLong(0);
+		header.putInt(0);
+
+		header.putLong(seed);
+		header.put((byte) players.size());
+		for (Player p : players) {
+			BinaryCodec.putString(header, p.getName());
+		}
+		header.putShort((short) table.size());
+		for (Card c : table) {
+			BinaryCodec.putCard(header, c);
+		}
+		for (Player p : players) {
+			header.putShort((short) initialDecks.get(p)
+					.getCards()
+					.size());
+			for (Card c : initialDecks.get(p)
+					.getCards()) {
+				header.putShort((short) cardIndexes[c.getId()]);
+			}
+		}
+		header.putInt(RECORDS_OFFSET_OFFSET, header.position());
+		header.flip();
+
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		return new GameJournal(channel, header, cardIndexes);
+	}
+
+	public long getRecordCount() {
+		return recordCount;
+	}
+
+	@Override
+	public void onEvent(GameEvent event) {
+		if (broken) {
+			return;
+		}
+		switch (event.getType()) {
+		case CARD_PLAYED:
+			append(PLAY, event.getSeat(), cardIndexes[event.getCardId()]);
+			break;
+		case PASSED:
+			// passes forced by an empty hand are replayed with the card emptying it
+			append(PASS, event.getSeat(), 0);
+			break;
+		case UNDONE:
+			append(UNDO, 0, 0);
+			break;
+		default:
+			break;
+		}
+	}
+
+	@Override
+	public void eventsLost(long count) {
+		if (!broken) {
+			broken = true;
+			System.err.println("journal stopped after " + recordCount + " moves: " + count + " events lost");
+			append(INCOMPLETE, 0, 0);
+		}
+	}
+
+	private void append(byte kind, int seat, int cardIndex) {
+		long position = recordsOffset + recordCount * RECORD_SIZE;
+		if (position + RECORD_SIZE > buffer.capacity()) {
+			remap(buffer.capacity() * 2L);
+		}
+
+		int p = (int) position;
+		buffer.put(p, kind);
+		buffer.put(p + 1, (byte) seat);
+		buffer.putShort(p + 2, (short) cardIndex);
+
+		recordCount++;
+		buffer.putLong(RECORD_COUNT_OFFSET, recordCount);
+	}
+
+	private void remap(long size) {
+		if (size > Integer.MAX_VALUE) {
+			throw new IllegalStateException("Journal is full");
+		}
+		try {
+			buffer.force();
+			buffer = channel.map(MapMode.READ_WRITE, 0, size);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Flushes the journal and trims the file to its content.
+	 */
+	@Override
+	public void close() throws IOException {
+		buffer.force();
+		channel.truncate(recordsOffset + recordCount * RECORD_SIZE);
+		channel.close();
+	}
+}
@@ -0,0 +1,266 @@
+package org.mofleury.agwenst.persistence;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.mofleury.agwenst.domain.live.CardMultiset;
+import org.mofleury.agwenst.domain.live.Deck;
+import org.mofleury.agwenst.domain.live.EngagedCard;
+import org.mofleury.agwenst.domain.live.Hand;
+import org.mofleury.agwenst.domain.live.Row;
+import org.mofleury.agwenst.domain.still.Card;
+import org.mofleury.agwenst.domain.still.CardCatalog;
+import org.mofleury.agwenst.domain.still.Player;
+import org.mofleury.agwenst.engine.Game;
+import org.mofleury.agwenst.engine.GameRandom;
+import org.mofleury.agwenst.engine.Round;
+
+/**
+ * Binary image of a game in progress, from which the game goes on exactly as the original would have.
+ * <p>
+ * After a fixed header (magic, version) come the state of the random generator, the players and the seat
+ * order of the first round, the table of the cards in play, then per seat the victories, hand and deck, the
+ * round counter and the round itself: turn, pass flags, special cards in the order they were played, and
+ * every row with its cards, their current values and its modifier. Hands and decks keep the order of their
+ * distinct cards. The undo history, the event ring and its consumers, the published version of the game and
+ * its metrics are not saved.
+ */
+public final class GameSnapshot {
+
+	static final int MAGIC = 0x41475353;
+	static final short VERSION = 1;
+
+	private static final int NO_CARD = 0xffff;
+
+	private GameSnapshot() {
+	}
+
+	public static void save(Game game, Path path) throws IOException {
+		ByteBuffer buffer = encode(game);
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+	}
+
+	public static Game load(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+			while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+			}
+			buffer.flip();
+			return decode(buffer);
+		}
+	}
+
+	/**
+	 * @return the snapshot, ready to be read
+	 */
+	public static ByteBuffer encode(Game game) {
+		for (int capacity = 1 << 12;; capacity *= 2) {
+			ByteBuffer buffer = ByteBuffer.allocate(capacity);
+			try {
+				encode(game, buffer);
+				buffer.flip();
+				return buffer;
+			} catch (BufferOverflowException e) {
+				// grow and start again
+			}
+		}
+	}
+
+	private static void encode(Game game, ByteBuffer buffer) {
+		List<Player> players = game.getPlayers();
+		Round round = game.getRound();
+		int seats = players.size();
+
+		// table of the cards in play, indexed by catalog id
+		List<Card> table = new ArrayList<>();
+		int[] cardIndexes = new int[CardCatalog.getInstance()
+				.size()];
+		Arrays.fill(cardIndexes, -1);
+		for (int seat = 0; seat < seats; seat++) {
+			index(game.getHand(seat), table, cardIndexes);
+			index(game.getDeck(seat), table, cardIndexes);
+			for (int r = 0; r < Game.ROW_COUNT; r++) {
+				Row row = round.getRow(seat, r);
+				for (EngagedCard c : row.getCards()) {
+					index(c.getCard(), table, cardIndexes);
+				}
+				if (row.getModifier() != null) {
+					index(row.getModifier()
+							.getCard(), table, cardIndexes);
+				}
+			}
+		}
+		for (Card c : round.getSpecialCards()) {
+			index(c, table, cardIndexes);
+		}
+
+		buffer.putInt(MAGIC);
+		buffer.putShort(VERSION);
+		buffer.putShort((short) 0);
+
+		buffer.putLong(game.getRand()
+				.getState());
+		buffer.put((byte) seats);
+		for (Player p : players) {
+			BinaryCodec.putString(buffer, p.getName());
+		}
+		for (Player p : game.getShuffledPlayers()) {
+			buffer.put((byte) game.seatOf(p));
+		}
+
+		buffer.putShort((short) table.size());
+		for (Card c : table) {
+			BinaryCodec.putCard(buffer, c);
+		}
+
+		for (int seat = 0; seat < seats; seat++) {
+			buffer.put((byte) game.getVictories(seat));
+			putMultiset(buffer, game.getHand(seat), cardIndexes);
+			putMultiset(buffer, game.getDeck(seat), cardIndexes);
+		}
+		buffer.put((byte) game.getRoundCounter());
+
+		buffer.put((byte) round.getCurrentSeat());
+		for (int seat = 0; seat < seats; seat++) {
+			buffer.put((byte) (round.hasPassed(seat) ? 1 : 0));
+		}
+		buffer.putShort((short) round.getSpecialCards()
+				.size());
+		for (Card c : round.getSpecialCards()) {
+			buffer.putShort((short) cardIndexes[c.getId()]);
+		}
+		for (int seat = 0; seat < seats; seat++) {
+			for (int r = 0; r < Game.ROW_COUNT; r++) {
+				Row row = round.getRow(seat, r);
+				buffer.putShort((short) (row.getModifier() == null ? NO_CARD
+						: cardIndexes[row.getModifier()
+								.getCard()
+								.getId()]));
+				buffer.putShort((short) row.getCards()
+						.size());
+				for (EngagedCard c : row.getCards()) {
+					buffer.putShort((short) cardIndexes[c.getCard()
+							.getId()]);
+					buffer.putInt(c.getCurrentValue());
+				}
+			}
+		}
+	}
+
+	private static void index(CardMultiset cards, List<Card> table, int[] cardIndexes) {
+		for (int i = 0; i < cards.distinctCount(); i++) {
+			index(CardCatalog.getInstance()
+					.get(cards.distinctId(i)), table, cardIndexes);
+		}
+	}
+
+	private static void index(Card card, List<Card> table, int[] cardIndexes) {
+		if (cardIndexes[card.getId()] < 0) {
+			cardIndexes[card.getId()] = table.size();
+			table.add(card);
+		}
+	}
+
+	private static void putMultiset(ByteBuffer buffer, CardMultiset cards, int[] cardIndexes) {
+		buffer.putShort((short) cards.distinctCount());
+		for (int i = 0; i < cards.distinctCount(); i++) {
+			int id = cards.distinctId(i);
+			buffer.putShort((short) cardIndexes[id]);
+			buffer.putShort((short) cards.count(id));
+		}
+	}
+
+	private static void getMultiset(ByteBuffer buffer, CardMultiset cards, Card[] table) {
+		for (int i = buffer.getShort(); i > 0; i--) {
+			int id = table[buffer.getShort()].getId();
+			for (int c = buffer.getShort(); c > 0; c--) {
+				cards.add(id);
+			}
+		}
+	}
+
+	public static Game decode(ByteBuffer buffer) throws IOException {
+		if (buffer.getInt() != MAGIC) {
+			throw new IOException("Not a game snapshot");
+		}
+		short version = buffer.getShort();
+		if (version != VERSION) {
+			throw new IOException("Unsupported snapshot version " + version);
+		}
+		buffer.getShort();
+
+		GameRandom rand = GameRandom.fromState(buffer.getLong());
+		int seats = buffer.get();
+		List<Player> players = new ArrayList<>();
+		for (int seat = 0; seat < seats; seat++) {
+			players.add(new Player(BinaryCodec.getString(buffer)));
+		}
+		List<Player> shuffledPlayers = new ArrayList<>();
+		for (int i = 0; i < seats; i++) {
+			shuffledPlayers.add(players.get(buffer.get()));
+		}
+
+		Card[] table = new Card[buffer.getShort()];
+		for (int i = 0; i < table.length; i++) {
+			table[i] = BinaryCodec.getCard(buffer);
+		}
+
+		int[] victories = new int[seats];
+		Hand[] hands = new Hand[seats];
+		Deck[] decks = new Deck[seats];
+		for (int seat = 0; seat < seats; seat++) {
+			victories[seat] = buffer.get();
+			hands[seat] = new Hand();
+			getMultiset(buffer, hands[seat], table);
+			decks[seat] = new Deck();
+			getMultiset(buffer, decks[seat], table);
+		}
+		int roundCounter = buffer.get();
+
+		Round round = new Round(players, buffer.get());
+		boolean[] passed = new boolean[seats];
+		for (int seat = 0; seat < seats; seat++) {
+			passed[seat] = buffer.get() != 0;
+		}
+		round.setTurn(round.getCurrentSeat(), passed);
+		for (int i = buffer.getShort(); i > 0; i--) {
+			round.playCard(table[buffer.getShort()]);
+		}
+		for (int seat = 0; seat < seats; seat++) {
+			for (int r = 0; r < Game.ROW_COUNT; r++) {
+				int modifier = buffer.getShort() & 0xffff;
+				if (modifier != NO_CARD) {
+					round.setModifier(seat, r, table[modifier]);
+				}
+				for (int i = buffer.getShort(); i > 0; i--) {
+					Card card = table[buffer.getShort()];
+					int currentValue = buffer.getInt();
+					round.playCard(seat, card);
+					List<EngagedCard> cards = round.getRow(seat, r)
+							.getCards();
+					if (cards.get(cards.size() - 1)
+							.getCurrentValue() != currentValue) {
+						throw new IOException("Card " + card.getName() + " is worth " + currentValue
+								+ " in the snapshot, but the effects in play make it "
+								+ cards.get(cards.size() - 1)
+										.getCurrentValue());
+					}
+				}
+			}
+		}
+
+		return Game.restore(rand, players, shuffledPlayers, victories, roundCounter, decks, hands, round);
+	}
+}
@@ -0,0 +1,191 @@
+package org.mofleury.agwenst.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.mofleury.agwenst.domain.still.Card;
+import org.mofleury.agwenst.domain.still.InitialDeck;
+import org.mofleury.agwenst.domain.still.Player;
+import org.mofleury.agwenst.engine.Game;
+
+import lombok.Getter;
+
+/**
+ * Rebuilds games from a {@link GameJournal}, by dealing them again from the recorded seed and decks and
+ * running the recorded moves through the engine.
+ */
+public class JournalReplay implements Closeable {
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer;
+
+	@Getter
+	private final long seed;
+	@Getter
+	private final List<Player> players;
+	@Getter
+	private final Map<Player, InitialDeck> initialDecks;
+
+	private final Card[] cards;
+	private final int recordsOffset;
+
+	private JournalReplay(FileChannel channel) throws IOException {
+		this.channel = channel;
+		buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+
+		if (buffer.getInt() != GameJournal.MAGIC) {
+			throw new IOException("Not a game journal");
+		}
+		short version = buffer.getShort();
+		if (version != GameJournal.VERSION) {
+			throw new IOException("Unsupported journal version " + version);
+		}
+		recordsOffset = buffer.getInt(GameJournal.RECORDS_OFFSET_OFFSET);
+		buffer.position(GameJournal.FIXED_HEADER_SIZE);
+
+		seed = buffer.getLong();
+		players = new ArrayList<>();
+		for (int i = buffer.get(); i > 0; i--) {
+			players.add(new Player(BinaryCodec.getString(buffer)));
+		}
+		cards = new Card[buffer.getShort()];
+		for (int i = 0; i < cards.length; i++) {
+			cards[i] = BinaryCodec.getCard(buffer);
+		}
+		initialDecks = new HashMap<>();
+		for (Player p : players) {
+			List<Card> deck = new ArrayList<>();
+			for (int i = buffer.getShort(); i > 0; i--) {
+				deck.add(cards[buffer.getShort()]);
+			}
+			initialDecks.put(p, new InitialDeck(deck));
+		}
+	}
+
+	public static JournalReplay open(Path path) throws IOException {
+		return new JournalReplay(FileChannel.open(path, StandardOpenOption.READ));
+	}
+
+	/**
+	 * @return the number of recorded moves, undos included
+	 */
+	public long getMoveCount() {
+		long count = getRecordCount();
+		return isComplete() ? count : count - 1;
+	}
+
+	/**
+	 * @return false if the journal lost the moves following the recorded ones, see
+	 *         {@link GameJournal#eventsLost(long)}
+	 */
+	public boolean isComplete() {
+		long count = getRecordCount();
+		return count == 0 || buffer.get(recordPosition(count - 1)) != GameJournal.INCOMPLETE;
+	}
+
+	private long getRecordCount() {
+		long count = buffer.getLong(GameJournal.RECORD_COUNT_OFFSET);
+		// a journal that was not closed may announce more records than the mapped file holds
+		return Math.min(count, (buffer.capacity() - recordsOffset) / GameJournal.RECORD_SIZE);
+	}
+
+	private int recordPosition(long move) {
+		return (int) (recordsOffset + move * GameJournal.RECORD_SIZE);
+	}
+
+	/**
+	 * @return the game as dealt, before any move
+	 */
+	public Game newGame() {
+		return new Game(seed, players, initialDecks);
+	}
+
+	/**
+	 * @return the game as it was after the given number of moves
+	 */
+	public Game gameAt(long move) {
+		Game game = newGame();
+		replay(game, 0, move);
+		return game;
+	}
+
+	/**
+	 * Applies the recorded moves from index from (included) to index to (excluded) to a game that already
+	 * went through the moves before from.
+	 */
+	public void replay(Game game, long from, long to) {
+		for (long move = from; move < to; move++) {
+			int p = recordPosition(move);
+			byte kind = buffer.get(p);
+			int seat = buffer.get(p + 1);
+
+			if (kind == GameJournal.INCOMPLETE) {
+				throw new IllegalStateException("The moves after move " + move + " were not recorded");
+			}
+			if (kind == GameJournal.UNDO) {
+				game.undo();
+				continue;
+			}
+			if (seat != game.getRound()
+					.getCurrentSeat()) {
+				throw new IllegalStateException("Move " + move + " was played by seat " + seat
+						+ " but the game expects seat " + game.getRound()
+								.getCurrentSeat());
+			}
+			if (kind == GameJournal.PLAY) {
+				game.playCard(cards[buffer.getShort(p + 2)]);
+			} else {
+				game.pass();
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * usage: replay &lt;journal file&gt; [move count]
+	 */
+	public static void main(String[] args) throws IOException {
+		try (JournalReplay replay = open(Paths.get(args[0]))) {
+			long moves = args.length > 1 ? Long.parseLong(args[1]) : replay.getMoveCount();
+
+			long start = System.nanoTime();
+			Game game = replay.gameAt(moves);
+			long elapsed = System.nanoTime() - start;
+
+			System.out.println("replayed " + moves + " moves of game " + replay.getSeed() + " in " + elapsed / 1000
+					+ " us");
+			if (!replay.isComplete()) {
+				System.out.println("the journal is incomplete: the moves after move " + replay.getMoveCount()
+						+ " were lost");
+			}
+			for (int seat = 0; seat < game.getPlayers()
+					.size(); seat++) {
+				System.out.println(game.getPlayers()
+						.get(seat)
+						.getName() + " : " + game.getVictories(seat) + " victories, "
+						+ game.getRound()
+								.getScore(seat)
+						+ " points in round " + (game.getRoundCounter() + 1));
+			}
+			if (game.gameOver()) {
+				System.out.println("game over, " + game.getWinner()
+						.map(p -> "the winner is " + p.getName())
+						.orElse("it's a draw"));
+			}
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package org.mofleury.agwenst.persistence;
+
+import org.mofleury.agwenst.engine.Game;
+
+/**
+ * Columns of the training samples written by {@link SampleWriter}. A sample describes a decision from the
+ * point of view of the seat taking it: pairs of values give that seat first, then its opponent.
+ */
+public enum SampleColumn {
+
+	/** seed of the game, on eight bytes */
+	GAME_SEED(8, 0),
+	/** seat taking the decision */
+	SEAT(1, 0),
+	/** rounds completed before the decision */
+	ROUND(1, 0),
+	VICTORIES(2, 0),
+	/** 1 for a seat that passed this round */
+	PASSED(2, 0),
+	HAND_SIZES(2, 0),
+	/** copies of each card of the catalog in the hand of the deciding seat */
+	HAND(0, 1),
+	/** copies of each card of the catalog among the special cards in play */
+	SPECIALS(0, 1),
+	/** score of each row on two bytes, rows of the deciding seat first */
+	ROW_SCORES(2 * Game.ROW_COUNT * 2, 0),
+	/**
+	 * current value of the first {@link SampleWriter#ROW_SLOTS} cards of each row on two bytes, 0 for empty
+	 * slots, rows of the deciding seat first
+	 */
+	ROW_VALUES(2 * Game.ROW_COUNT * SampleWriter.ROW_SLOTS * 2, 0),
+	/** move code of the decision on two bytes, see {@link Game#PASS} */
+	ACTION(2, 0),
+	/** 1 if the deciding seat won the round of the decision, -1 if it lost it */
+	ROUND_OUTCOME(1, 0),
+	/** 1 if the deciding seat won the game, 0 for a draw, -1 for a loss */
+	GAME_OUTCOME(1, 0);
+
+	private final int fixedWidth;
+	private final int widthPerCard;
+
+	SampleColumn(int fixedWidth, int widthPerCard) {
+		this.fixedWidth = fixedWidth;
+		this.widthPerCard = widthPerCard;
+	}
+
+	/**
+	 * @return the number of bytes of the column per sample
+	 */
+	public int width(int cardSlots) {
+		return fixedWidth + widthPerCard * cardSlots;
+	}
+}
@@ -0,0 +1,107 @@
+package org.mofleury.agwenst.persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Where the columns of training samples lie, in the rows of a {@link SampleWriter} and in the chunks of a
+ * sample file.
+ */
+final class SampleLayout {
+
+	static final int MAGIC = 0x41475444;
+	static final short VERSION = 1;
+
+	// chunks start after a fixed size header: magic, version, padding, chunk capacity, card slots, row slots,
+	// then the width of every column and the card table
+	static final int HEADER_SIZE = 1 << 16;
+	// sample count of the chunk, padding
+	static final int CHUNK_HEADER_SIZE = 8;
+
+	private static final SampleColumn[] COLUMNS = SampleColumn.values();
+
+	final int cardSlots;
+	final int chunkCapacity;
+	final int rowWidth;
+	final int chunkSize;
+
+	private final int[] widths = new int[COLUMNS.length];
+	private final int[] rowOffsets = new int[COLUMNS.length];
+	private final int[] columnOffsets = new int[COLUMNS.length];
+
+	SampleLayout(int cardSlots, int chunkCapacity) {
+		this.cardSlots = cardSlots;
+		this.chunkCapacity = chunkCapacity;
+		int rowOffset = 0;
+		int columnOffset = CHUNK_HEADER_SIZE;
+		for (SampleColumn c : COLUMNS) {
+			int width = c.width(cardSlots);
+			widths[c.ordinal()] = width;
+			rowOffsets[c.ordinal()] = rowOffset;
+			columnOffsets[c.ordinal()] = columnOffset;
+			rowOffset += width;
+			// keep every column aligned on eight bytes
+			columnOffset += (width * chunkCapacity + 7) & ~7;
+		}
+		rowWidth = rowOffset;
+		chunkSize = columnOffset;
+	}
+
+	int width(SampleColumn c) {
+		return widths[c.ordinal()];
+	}
+
+	/**
+	 * @return the offset of a column within a sample laid out as a row
+	 */
+	int rowOffset(SampleColumn c) {
+		return rowOffsets[c.ordinal()];
+	}
+
+	/**
+	 * @return the offset of a column within a chunk
+	 */
+	int columnOffset(SampleColumn c) {
+		return columnOffsets[c.ordinal()];
+	}
+
+	long chunkPosition(int chunk) {
+		return HEADER_SIZE + (long) chunk * chunkSize;
+	}
+
+	void writeHeader(ByteBuffer header) {
+		header.putInt(MAGIC);
+		header.putShort(VERSION);
+		header.putShort((short) 0);
+		header.putInt(chunkCapacity);
+		header.putShort((short) cardSlots);
+		header.putShort((short) SampleWriter.ROW_SLOTS);
+		header.putShort((short) COLUMNS.length);
+		for (SampleColumn c : COLUMNS) {
+			header.putShort((short) width(c));
+		}
+	}
+
+	static SampleLayout readHeader(ByteBuffer header) throws IOException {
+		if (header.getInt() != MAGIC) {
+			throw new IOException("Not a sample file");
+		}
+		short version = header.getShort();
+		if (version != VERSION) {
+			throw new IOException("Unsupported sample file version " + version);
+		}
+		header.getShort();
+		int chunkCapacity = header.getInt();
+		int cardSlots = header.getShort();
+		if (header.getShort() != SampleWriter.ROW_SLOTS || header.getShort() != COLUMNS.length) {
+			throw new IOException("Unsupported sample columns");
+		}
+		SampleLayout layout = new SampleLayout(cardSlots, chunkCapacity);
+		for (SampleColumn c : COLUMNS) {
+			if (header.getShort() != layout.width(c)) {
+				throw new IOException("Unexpected width for column " + c);
+			}
+		}
+		return layout;
+	}
+}
@@ -0,0 +1,94 @@
+package org.mofleury.agwenst.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.mofleury.agwenst.domain.still.Card;
+
+import lombok.Getter;
+
+/**
+ * Reads the columns of a file written by a {@link SampleWriter}, chunk by chunk.
+ */
+public class SampleReader implements Closeable {
+
+	private final FileChannel channel;
+	private final SampleLayout layout;
+
+	/**
+	 * the card of each card slot of the {@link SampleColumn#HAND} and {@link SampleColumn#SPECIALS} columns,
+	 * the card played by an action being the card of slot action - 1
+	 */
+	@Getter
+	private final List<Card> cards;
+
+	@Getter
+	private final int chunkCount;
+
+	private SampleReader(FileChannel channel, SampleLayout layout, List<Card> cards) throws IOException {
+		this.channel = channel;
+		this.layout = layout;
+		this.cards = Collections.unmodifiableList(cards);
+		chunkCount = (int) ((channel.size() - SampleLayout.HEADER_SIZE) / layout.chunkSize);
+	}
+
+	public static SampleReader open(Path path) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			ByteBuffer header = channel.map(MapMode.READ_ONLY, 0, SampleLayout.HEADER_SIZE);
+			SampleLayout layout = SampleLayout.readHeader(header);
+			List<Card> cards = new ArrayList<>();
+			for (int i = 0; i < layout.cardSlots; i++) {
+				cards.add(BinaryCodec.getCard(header));
+			}
+			return new SampleReader(channel, layout, cards);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	public int getCardSlots() {
+		return layout.cardSlots;
+	}
+
+	public int width(SampleColumn column) {
+		return layout.width(column);
+	}
+
+	public int getSampleCount(int chunk) throws IOException {
+		ByteBuffer count = ByteBuffer.allocate(4);
+		channel.read(count, layout.chunkPosition(chunk));
+		return count.getInt(0);
+	}
+
+	public long getSampleCount() throws IOException {
+		long count = 0;
+		for (int chunk = 0; chunk < chunkCount; chunk++) {
+			count += getSampleCount(chunk);
+		}
+		return count;
+	}
+
+	/**
+	 * @return the values of a column for the samples of a chunk, {@link #width(SampleColumn)} bytes per
+	 *         sample
+	 */
+	public ByteBuffer column(int chunk, SampleColumn column) throws IOException {
+		return channel.map(MapMode.READ_ONLY, layout.chunkPosition(chunk) + layout.columnOffset(column),
+				(long) getSampleCount(chunk) * layout.width(column));
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
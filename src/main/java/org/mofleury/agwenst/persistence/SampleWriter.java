@@ -0,0 +1,244 @@
+package org.mofleury.agwenst.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import org.mofleury.agwenst.domain.live.EngagedCard;
+import org.mofleury.agwenst.domain.live.Hand;
+import org.mofleury.agwenst.domain.still.Card;
+import org.mofleury.agwenst.domain.still.CardCatalog;
+import org.mofleury.agwenst.engine.Game;
+import org.mofleury.agwenst.engine.Round;
+
+import lombok.Getter;
+
+/**
+ * Writes one training sample per decision of the games it is shown, with the outcome of the round and of
+ * the game the decision led to, in a columnar file of fixed-width values.
+ * <p>
+ * The file is a header followed by chunks of a fixed number of samples. Within a chunk each
+ * {@link SampleColumn} is stored contiguously, so that a column of a chunk can be read without touching the
+ * others. Chunks are written one at a time through a memory mapping, and the sample count of a chunk is
+ * updated after every game, so that a file is readable even if the process died while writing it. The
+ * decisions of the game in progress wait in a small buffer until the game outcome is known. Not thread
+ * safe: every thread writes its own file.
+ *
+ * @see SampleReader
+ */
+public class SampleWriter implements Closeable {
+
+	/**
+	 * Cards of a row whose value is a feature of its own; the value of the other cards only counts in the
+	 * row score.
+	 */
+	public static final int ROW_SLOTS = 16;
+
+	static final int DEFAULT_CHUNK_CAPACITY = 1 << 14;
+
+	private static final SampleColumn[] COLUMNS = SampleColumn.values();
+
+	private final FileChannel channel;
+	private final SampleLayout layout;
+
+	private MappedByteBuffer chunk;
+	private int chunkIndex = -1;
+	private int chunkSamples;
+
+	@Getter
+	private long sampleCount;
+
+	// decisions of the game in progress, laid out as rows, until the outcome of the game is known
+	private ByteBuffer staging;
+	private int staged;
+	// first decision of the round in progress
+	private int roundStart;
+	private long gameSeed;
+
+	private SampleWriter(FileChannel channel, SampleLayout layout) {
+		this.channel = channel;
+		this.layout = layout;
+		staging = ByteBuffer.allocate(layout.rowWidth * 64);
+	}
+
+	public static SampleWriter create(Path path) throws IOException {
+		return create(path, DEFAULT_CHUNK_CAPACITY);
+	}
+
+	/**
+	 * Starts a sample file, in which cards are identified by their catalog id as of now.
+	 *
+	 * @param chunkCapacity
+	 *            number of samples per chunk
+	 */
+	public static SampleWriter create(Path path, int chunkCapacity) throws IOException {
+		CardCatalog catalog = CardCatalog.getInstance();
+		SampleLayout layout = new SampleLayout(catalog.size(), chunkCapacity);
+
+		ByteBuffer header = ByteBuffer.allocate(SampleLayout.HEADER_SIZE);
+		layout.writeHeader(header);
+		for (int id = 0; id < layout.cardSlots; id++) {
+			BinaryCodec.putCard(header, catalog.get(id));
+		}
+		header.flip();
+
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		while (header.hasRemaining()) {
+			channel.write(header, header.position());
+		}
+		return new SampleWriter(channel, layout);
+	}
+
+	public void startGame(long seed) {
+		gameSeed = seed;
+		staged = 0;
+		roundStart = 0;
+	}
+
+	/**
+	 * Records the decision of the current player, before the move is applied.
+	 */
+	public void record(Game game, int move) {
+		if ((staged + 1) * layout.rowWidth > staging.capacity()) {
+			ByteBuffer larger = ByteBuffer.allocate(staging.capacity() * 2);
+			larger.put(staging.array(), 0, staged * layout.rowWidth);
+			staging = larger;
+		}
+		int base = staged * layout.rowWidth;
+		Arrays.fill(staging.array(), base, base + layout.rowWidth, (byte) 0);
+
+		Round round = game.getRound();
+		int seat = round.getCurrentSeat();
+		int other = 1 - seat;
+
+		staging.putLong(base + layout.rowOffset(SampleColumn.GAME_SEED), gameSeed);
+		staging.put(base + layout.rowOffset(SampleColumn.SEAT), (byte) seat);
+		staging.put(base + layout.rowOffset(SampleColumn.ROUND), (byte) game.getRoundCounter());
+		putPair(base, SampleColumn.VICTORIES, game.getVictories(seat), game.getVictories(other));
+		putPair(base, SampleColumn.PASSED, round.hasPassed(seat) ? 1 : 0, round.hasPassed(other) ? 1 : 0);
+		putPair(base, SampleColumn.HAND_SIZES, game.getHand(seat)
+				.size(),
+				game.getHand(other)
+						.size());
+
+		Hand hand = game.getHand(seat);
+		int handOffset = base + layout.rowOffset(SampleColumn.HAND);
+		for (int i = 0; i < hand.distinctCount(); i++) {
+			int id = hand.distinctId(i);
+			staging.put(handOffset + slot(id), (byte) hand.count(id));
+		}
+		int specialsOffset = base + layout.rowOffset(SampleColumn.SPECIALS);
+		for (Card c : round.getSpecialCards()) {
+			int p = specialsOffset + slot(c.getId());
+			staging.put(p, (byte) (staging.get(p) + 1));
+		}
+
+		int scoresOffset = base + layout.rowOffset(SampleColumn.ROW_SCORES);
+		int valuesOffset = base + layout.rowOffset(SampleColumn.ROW_VALUES);
+		int rowIndex = 0;
+		for (int k = 0; k < 2; k++) {
+			int s = k == 0 ? seat : other;
+			for (int r = 0; r < Game.ROW_COUNT; r++, rowIndex++) {
+				staging.putShort(scoresOffset + rowIndex * 2, (short) round.getScore(s, r));
+				List<EngagedCard> cards = round.getRow(s, r)
+						.getCards();
+				for (int i = 0; i < cards.size() && i < ROW_SLOTS; i++) {
+					staging.putShort(valuesOffset + (rowIndex * ROW_SLOTS + i) * 2, (short) cards.get(i)
+							.getCurrentValue());
+				}
+			}
+		}
+
+		staging.putShort(base + layout.rowOffset(SampleColumn.ACTION), (short) move);
+		staged++;
+	}
+
+	private void putPair(int base, SampleColumn column, int own, int opponent) {
+		staging.put(base + layout.rowOffset(column), (byte) own);
+		staging.put(base + layout.rowOffset(column) + 1, (byte) opponent);
+	}
+
+	private int slot(int cardId) {
+		if (cardId >= layout.cardSlots) {
+			throw new IllegalStateException("Card " + CardCatalog.getInstance()
+					.get(cardId)
+					.getName() + " joined the catalog after the sample file was created");
+		}
+		return cardId;
+	}
+
+	public void roundEnded(int winnerSeat) {
+		int seatOffset = layout.rowOffset(SampleColumn.SEAT);
+		int outcomeOffset = layout.rowOffset(SampleColumn.ROUND_OUTCOME);
+		for (int i = roundStart; i < staged; i++) {
+			int base = i * layout.rowWidth;
+			staging.put(base + outcomeOffset, (byte) (staging.get(base + seatOffset) == winnerSeat ? 1 : -1));
+		}
+		roundStart = staged;
+	}
+
+	/**
+	 * Completes the samples of the game and appends them to the file.
+	 *
+	 * @param winnerSeat
+	 *            -1 for a draw
+	 */
+	public void gameEnded(int winnerSeat) {
+		int seatOffset = layout.rowOffset(SampleColumn.SEAT);
+		int outcomeOffset = layout.rowOffset(SampleColumn.GAME_OUTCOME);
+		for (int i = 0; i < staged; i++) {
+			int base = i * layout.rowWidth;
+			staging.put(base + outcomeOffset,
+					(byte) (winnerSeat < 0 ? 0 : staging.get(base + seatOffset) == winnerSeat ? 1 : -1));
+		}
+
+		for (int i = 0; i < staged; i++) {
+			if (chunk == null || chunkSamples == layout.chunkCapacity) {
+				nextChunk();
+			}
+			int base = i * layout.rowWidth;
+			for (SampleColumn c : COLUMNS) {
+				int width = layout.width(c);
+				int from = base + layout.rowOffset(c);
+				chunk.position(layout.columnOffset(c) + chunkSamples * width);
+				chunk.put(staging.array(), from, width);
+			}
+			chunkSamples++;
+			chunk.putInt(0, chunkSamples);
+		}
+		sampleCount += staged;
+		staged = 0;
+		roundStart = 0;
+	}
+
+	private void nextChunk() {
+		try {
+			chunkIndex++;
+			chunk = channel.map(MapMode.READ_WRITE, layout.chunkPosition(chunkIndex), layout.chunkSize);
+			chunkSamples = 0;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Flushes the samples of the completed games; those of a game in progress are lost.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (chunk != null) {
+			chunk.force();
+		}
+		channel.truncate(layout.chunkPosition(chunkIndex + 1));
+		channel.close();
+	}
+}
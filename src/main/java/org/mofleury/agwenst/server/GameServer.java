@@ -0,0 +1,216 @@
+package org.mofleury.agwenst.server;
+
+import static java.util.Arrays.asList;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mofleury.agwenst.DeckBuilder;
+import org.mofleury.agwenst.domain.still.InitialDeck;
+import org.mofleury.agwenst.domain.still.Player;
+import org.mofleury.agwenst.engine.Game;
+import org.mofleury.agwenst.simulation.GreedyPolicy;
+import org.mofleury.agwenst.simulation.PlayerPolicy;
+import org.mofleury.agwenst.simulation.Simulator;
+
+import lombok.Getter;
+
+/**
+ * Hosts one independent game per TCP connection, driven by the console commands over a line protocol.
+ * Every input line gets the console output it produces, followed by a line holding a single dot.
+ * <p>
+ * Connections are spread over a few selector event loops; a game is only ever touched by the loop owning its
+ * connection, so games need no synchronization. A new game is dealt when one is complete, and
+ * {@code exit} closes the connection.
+ */
+public class GameServer implements Closeable {
+
+	private final ServerSocketChannel serverChannel;
+	private final EventLoop[] loops;
+	private final Thread acceptor;
+
+	private final List<Player> players = asList(new Player("Jack"), new Player("Johnes"));
+	private final Map<Player, InitialDeck> initialDecks = new HashMap<>();
+	// seat played by the server, null for hot-seat games
+	private final PlayerPolicy opponent;
+	private final long masterSeed;
+	private final AtomicLong gameCounter = new AtomicLong();
+
+	@Getter
+	private final int port;
+
+	private volatile boolean running = true;
+
+	/**
+	 * Listens on the loopback interface only, the server having no authentication.
+	 *
+	 * @param port
+	 *            port to listen to, 0 to pick any free port
+	 * @param opponent
+	 *            policy playing the second seat of every game, null to let the clients play both seats
+	 */
+	public GameServer(int port, int loopCount, PlayerPolicy opponent) throws IOException {
+		this(InetAddress.getLoopbackAddress(), port, loopCount, opponent);
+	}
+
+	/**
+	 * @param address
+	 *            interface to listen on, the wildcard address for all of them
+	 */
+	public GameServer(InetAddress address, int port, int loopCount, PlayerPolicy opponent) throws IOException {
+		this.opponent = opponent;
+		this.masterSeed = System.nanoTime();
+
+		InitialDeck deck = new DeckBuilder().balancedDeck();
+		players.forEach(p -> initialDecks.put(p, deck));
+
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.bind(new InetSocketAddress(address, port), 1024);
+		this.port = ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+
+		loops = new EventLoop[loopCount];
+		for (int i = 0; i < loopCount; i++) {
+			loops[i] = new EventLoop(Selector.open());
+			Thread t = new Thread(loops[i], "game-loop-" + i);
+			t.setDaemon(true);
+			t.start();
+		}
+
+		acceptor = new Thread(this::accept, "game-acceptor");
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	private void accept() {
+		int next = 0;
+		while (running) {
+			try {
+				SocketChannel channel = serverChannel.accept();
+				channel.configureBlocking(false);
+				channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+				loops[next].register(channel);
+				next = (next + 1) % loops.length;
+			} catch (IOException e) {
+				if (running) {
+					e.printStackTrace();
+				}
+				return;
+			}
+		}
+	}
+
+	Game newGame() {
+		return new Game(Simulator.gameSeed(masterSeed, gameCounter.getAndIncrement()), players, initialDecks);
+	}
+
+	PlayerPolicy getOpponent() {
+		return opponent;
+	}
+
+	/**
+	 * @return the number of games dealt since the server started
+	 */
+	public long getGameCount() {
+		return gameCounter.get();
+	}
+
+	@Override
+	public void close() throws IOException {
+		running = false;
+		serverChannel.close();
+		for (EventLoop loop : loops) {
+			loop.selector.close();
+		}
+	}
+
+	private class EventLoop implements Runnable {
+
+		private final Selector selector;
+		private final Queue<SocketChannel> registrations = new ConcurrentLinkedQueue<>();
+
+		EventLoop(Selector selector) {
+			this.selector = selector;
+		}
+
+		void register(SocketChannel channel) {
+			registrations.add(channel);
+			selector.wakeup();
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (running) {
+					selector.select();
+
+					SocketChannel channel;
+					while ((channel = registrations.poll()) != null) {
+						SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+						Session session = new Session(GameServer.this, key);
+						key.attach(session);
+						session.open();
+					}
+
+					Iterator<SelectionKey> keys = selector.selectedKeys()
+							.iterator();
+					while (keys.hasNext()) {
+						SelectionKey key = keys.next();
+						keys.remove();
+						Session session = (Session) key.attachment();
+						try {
+							if (key.isReadable()) {
+								session.read();
+							}
+							if (key.isValid() && key.isWritable()) {
+								session.write();
+							}
+						} catch (IOException e) {
+							session.close();
+						}
+					}
+				}
+			} catch (ClosedSelectorException e) {
+				// server closed
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * server [port] [event loops] [hotseat]: hosts games against the greedy policy, or hot-seat games, on the
+	 * loopback interface unless the agwenst.bind system property names another address
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 4242;
+		int loopCount = args.length > 1 ? Integer.parseInt(args[1])
+				: Runtime.getRuntime()
+						.availableProcessors();
+		PlayerPolicy opponent = args.length > 2 && args[2].equals("hotseat") ? null
+				: new GreedyPolicy();
+
+		String bind = System.getProperty("agwenst.bind");
+		InetAddress address = bind == null ? InetAddress.getLoopbackAddress() : InetAddress.getByName(bind);
+
+		try (GameServer server = new GameServer(address, port, loopCount, opponent)) {
+			System.out.println("Listening on " + address.getHostAddress() + " port " + server.getPort() + " with "
+					+ loopCount + " event loops");
+			server.acceptor.join();
+		}
+	}
+}
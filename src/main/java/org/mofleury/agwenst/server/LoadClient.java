@@ -0,0 +1,126 @@
+package org.mofleury.agwenst.server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Opens many connections to a {@link GameServer} and sends them scripted commands, to measure the command
+ * latency. Each thread owns a share of the connections and sends one command at a time to each of them in
+ * turn, so that the number of threads is the number of commands in flight.
+ */
+public class LoadClient {
+
+	private static final String[] SCRIPT = { "hand", "play 1", "field", "status", "play 1", "hand", "pass" };
+
+	private static class Connection {
+		private final Socket socket;
+		private final BufferedReader in;
+		private final OutputStream out;
+		private int step = 0;
+
+		Connection(String host, int port) throws IOException {
+			socket = new Socket(host, port);
+			socket.setTcpNoDelay(true);
+			in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+			out = socket.getOutputStream();
+			readResponse();
+		}
+
+		long send() throws IOException {
+			String command = SCRIPT[step++ % SCRIPT.length];
+			long start = System.nanoTime();
+			out.write((command + "\n").getBytes(StandardCharsets.UTF_8));
+			out.flush();
+			readResponse();
+			return System.nanoTime() - start;
+		}
+
+		private void readResponse() throws IOException {
+			String line;
+			while ((line = in.readLine()) != null) {
+				if (line.equals(".")) {
+					return;
+				}
+			}
+			throw new IOException("Connection closed by the server");
+		}
+	}
+
+	/**
+	 * @return the latency of every command, in nanoseconds
+	 */
+	private static long[] drive(String host, int port, int connections, int commands, CyclicBarrier connected)
+			throws Exception {
+		List<Connection> open = new ArrayList<>();
+		try {
+			for (int i = 0; i < connections; i++) {
+				open.add(new Connection(host, port));
+			}
+			connected.await();
+			long[] latencies = new long[commands];
+			for (int i = 0; i < commands; i++) {
+				latencies[i] = open.get(i % connections)
+						.send();
+			}
+			return latencies;
+		} finally {
+			for (Connection c : open) {
+				c.socket.close();
+			}
+		}
+	}
+
+	private static double millis(long nanos) {
+		return nanos / 1e6;
+	}
+
+	/**
+	 * load [host] [port] [connections] [commands] [threads]
+	 */
+	public static void main(String[] args) throws Exception {
+		String host = args.length > 0 ? args[0] : "localhost";
+		int port = args.length > 1 ? Integer.parseInt(args[1]) : 4242;
+		int connections = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+		int commands = args.length > 3 ? Integer.parseInt(args[3]) : 100_000;
+		int threads = args.length > 4 ? Integer.parseInt(args[4]) : 8;
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<long[]>> results = new ArrayList<>();
+		long[] start = new long[1];
+		// the clock starts once all the connections are open and their first game dealt
+		CyclicBarrier connected = new CyclicBarrier(threads, () -> start[0] = System.nanoTime());
+		for (int t = 0; t < threads; t++) {
+			int share = connections / threads + (t < connections % threads ? 1 : 0);
+			int commandShare = commands / threads + (t < commands % threads ? 1 : 0);
+			results.add(executor.submit(() -> drive(host, port, Math.max(1, share), commandShare, connected)));
+		}
+
+		long[] latencies = new long[0];
+		for (Future<long[]> f : results) {
+			long[] l = f.get();
+			int offset = latencies.length;
+			latencies = Arrays.copyOf(latencies, offset + l.length);
+			System.arraycopy(l, 0, latencies, offset, l.length);
+		}
+		long elapsed = System.nanoTime() - start[0];
+		executor.shutdown();
+
+		Arrays.sort(latencies);
+		int n = latencies.length;
+		System.out.println(n + " commands over " + connections + " connections in " + millis(elapsed) + " ms, "
+				+ (long) (n / (elapsed / 1e9)) + " commands/s");
+		System.out.println("latency p50 " + millis(latencies[n / 2]) + " ms, p99 "
+				+ millis(latencies[(int) (n * 0.99)]) + " ms, max " + millis(latencies[n - 1]) + " ms");
+	}
+}
@@ -0,0 +1,125 @@
+package org.mofleury.agwenst.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+import org.mofleury.agwenst.console.BufferOutput;
+import org.mofleury.agwenst.console.ConsoleUI;
+import org.mofleury.agwenst.engine.Game;
+
+/**
+ * One connection of the {@link GameServer} and the game it plays. Only used from the event loop owning the
+ * connection.
+ */
+class Session {
+
+	static final String END_OF_RESPONSE = ".\n";
+
+	private static final int MAX_LINE_LENGTH = 1024;
+
+	private final GameServer server;
+	private final SelectionKey key;
+	private final SocketChannel channel;
+
+	private final BufferOutput out = new BufferOutput();
+	// the events of a command are read before the next one, so a small ring is enough per connection
+	private final ConsoleUI ui = new ConsoleUI(out, 64);
+
+	private final ByteBuffer readBuffer = ByteBuffer.allocate(4096);
+	private final StringBuilder line = new StringBuilder();
+	private ByteBuffer writeBuffer = ByteBuffer.allocate(4096);
+
+	private boolean closing = false;
+
+	Session(GameServer server, SelectionKey key) {
+		this.server = server;
+		this.key = key;
+		this.channel = (SocketChannel) key.channel();
+		if (server.getOpponent() != null) {
+			ui.setComputerPlayer(1, server.getOpponent());
+		}
+	}
+
+	void open() throws IOException {
+		ui.start(server.newGame());
+		respond();
+	}
+
+	void read() throws IOException {
+		if (channel.read(readBuffer) < 0) {
+			close();
+			return;
+		}
+
+		readBuffer.flip();
+		while (readBuffer.hasRemaining() && !closing) {
+			char c = (char) (readBuffer.get() & 0xff);
+			if (c == '\n') {
+				handle(line.toString());
+				line.setLength(0);
+			} else if (c != '\r') {
+				if (line.length() == MAX_LINE_LENGTH) {
+					close();
+					return;
+				}
+				line.append(c);
+			}
+		}
+		readBuffer.clear();
+	}
+
+	private void handle(String input) throws IOException {
+		if (!ui.execute(input)) {
+			if (ui.isGameOver()) {
+				ui.start(server.newGame());
+			} else {
+				closing = true;
+			}
+		}
+		respond();
+	}
+
+	private void respond() throws IOException {
+		byte[] bytes = (out.take() + END_OF_RESPONSE).getBytes(StandardCharsets.UTF_8);
+		if (writeBuffer.remaining() < bytes.length) {
+			ByteBuffer larger = ByteBuffer.allocate(Math.max(writeBuffer.capacity() * 2,
+					writeBuffer.position() + bytes.length));
+			writeBuffer.flip();
+			larger.put(writeBuffer);
+			writeBuffer = larger;
+		}
+		writeBuffer.put(bytes);
+		write();
+	}
+
+	/**
+	 * Writes as much pending output as the socket accepts. Reading is suspended while output is pending, so
+	 * that a client that does not read its responses cannot make the server buffer without limit.
+	 */
+	void write() throws IOException {
+		writeBuffer.flip();
+		channel.write(writeBuffer);
+		writeBuffer.compact();
+
+		if (writeBuffer.position() > 0) {
+			key.interestOps(SelectionKey.OP_WRITE);
+		} else if (closing) {
+			close();
+		} else {
+			key.interestOps(SelectionKey.OP_READ);
+		}
+	}
+
+	void close() {
+		closing = true;
+		key.cancel();
+		try {
+			channel.close();
+		} catch (IOException e) {
+			// already closed
+		}
+	}
+}
@@ -0,0 +1,433 @@
+package org.mofleury.agwenst.simulation;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.mofleury.agwenst.DeckBuilder;
+import org.mofleury.agwenst.domain.still.Card;
+import org.mofleury.agwenst.domain.still.InitialDeck;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Evolves deck compositions over a pool of cards, scoring each deck by its win rate against a reference deck.
+ * <p>
+ * A deck is a number of copies of every pool card. Every generation breeds children from the best decks by
+ * crossover and mutation, evaluates them in parallel and keeps the best of parents and children. All decks
+ * are evaluated on the same game seeds, half of the games from each seat, so that their scores are directly
+ * comparable. An evaluation is played in batches and abandoned as soon as the deck clearly cannot make it
+ * into the best decks. Evaluations are cached by composition, and the cache and the population can be saved
+ * to a checkpoint file to resume a search.
+ */
+public class DeckOptimizer implements AutoCloseable {
+
+	private static final int BATCH_GAMES = 100;
+	// z-score of the confidence bound below which an evaluation is abandoned
+	private static final double REJECTION_Z = 2.58;
+	// breeding attempts per child wanted, after which a generation makes do with the new decks found
+	private static final int ATTEMPTS_PER_CHILD = 50;
+
+	private final List<Card> pool;
+	private final int deckSize;
+	private final int maxCopies;
+	private final InitialDeck reference;
+	private final PlayerPolicy policy;
+	private final int gamesPerDeck;
+	private final long masterSeed;
+
+	private final Random random;
+	private final ExecutorService executor;
+
+	private final Map<String, Evaluation> cache = new ConcurrentHashMap<>();
+	@Getter
+	private List<int[]> population = new ArrayList<>();
+	@Getter
+	private int generation = 0;
+
+	/**
+	 * Outcome of the games of a deck against the reference deck. Draws count as half a win.
+	 */
+	@RequiredArgsConstructor
+	@Getter
+	public static class Evaluation {
+		private final int halfWins;
+		private final int games;
+		/**
+		 * false if the evaluation was abandoned before all the games were played
+		 */
+		private final boolean complete;
+
+		public double getWinRate() {
+			return games == 0 ? 0 : halfWins / 2.0 / games;
+		}
+
+		double upperBound() {
+			double p = getWinRate();
+			return p + REJECTION_Z * Math.sqrt(Math.max(p * (1 - p), 0.01) / games);
+		}
+	}
+
+	public DeckOptimizer(List<Card> pool, int deckSize, int maxCopies, InitialDeck reference, PlayerPolicy policy,
+			int gamesPerDeck, int threads, long seed) {
+		if (pool.size() * maxCopies < deckSize) {
+			throw new IllegalArgumentException(
+					"A pool of " + pool.size() + " cards cannot fill a deck of " + deckSize + " cards");
+		}
+		this.pool = new ArrayList<>(pool);
+		this.deckSize = deckSize;
+		this.maxCopies = maxCopies;
+		this.reference = reference;
+		this.policy = policy;
+		this.gamesPerDeck = gamesPerDeck;
+		this.masterSeed = seed;
+		this.random = new Random(seed);
+		this.executor = Executors.newFixedThreadPool(threads);
+	}
+
+	/**
+	 * @return the distinct cards of a deck, in order of first appearance
+	 */
+	public static List<Card> poolOf(InitialDeck deck) {
+		return new ArrayList<>(new LinkedHashSet<>(deck.getCards()));
+	}
+
+	public InitialDeck toDeck(int[] counts) {
+		List<Card> cards = new ArrayList<>();
+		for (int i = 0; i < counts.length; i++) {
+			for (int c = 0; c < counts[i]; c++) {
+				cards.add(pool.get(i));
+			}
+		}
+		return new InitialDeck(cards);
+	}
+
+	/**
+	 * @return the copies of each pool card in the deck, which must only hold pool cards
+	 */
+	public int[] countsOf(InitialDeck deck) {
+		int[] counts = new int[pool.size()];
+		for (Card c : deck.getCards()) {
+			int index = pool.indexOf(c);
+			if (index < 0) {
+				throw new IllegalArgumentException("Card " + c + " is not in the pool");
+			}
+			counts[index]++;
+		}
+		return counts;
+	}
+
+	private static String key(int[] counts) {
+		StringBuilder key = new StringBuilder();
+		for (int i = 0; i < counts.length; i++) {
+			if (i > 0) {
+				key.append(',');
+			}
+			key.append(counts[i]);
+		}
+		return key.toString();
+	}
+
+	private static int[] parseKey(String key) {
+		return Arrays.stream(key.split(","))
+				.mapToInt(Integer::parseInt)
+				.toArray();
+	}
+
+	/**
+	 * @return the cached evaluation of a deck, or null if it was never evaluated
+	 */
+	public Evaluation getEvaluation(int[] counts) {
+		return cache.get(key(counts));
+	}
+
+	/**
+	 * Plays the games of a deck against the reference, unless it was already evaluated. An evaluation
+	 * abandoned against a higher threshold resumes where it stopped.
+	 *
+	 * @param threshold
+	 *            win rate the deck must be able to reach for the evaluation to go on
+	 */
+	public Evaluation evaluate(int[] counts, double threshold) {
+		String key = key(counts);
+		Evaluation cached = cache.get(key);
+		if (cached != null && (cached.isComplete() || cached.upperBound() < threshold)) {
+			return cached;
+		}
+
+		InitialDeck deck = toDeck(counts);
+		Simulator first = new Simulator(policy, policy, deck, reference, 1);
+		Simulator second = new Simulator(policy, policy, reference, deck, 1);
+
+		// games are played on fixed seeds, so an abandoned evaluation goes on with the next game
+		Evaluation evaluation = cached == null ? new Evaluation(0, 0, false) : cached;
+		int halfWins = evaluation.getHalfWins();
+		int games = evaluation.getGames();
+		while (games < gamesPerDeck) {
+			int batchEnd = Math.min(gamesPerDeck, games + BATCH_GAMES);
+			for (; games < batchEnd; games++) {
+				boolean firstSeat = games % 2 == 0;
+				GameOutcome outcome = (firstSeat ? first : second).playGame(Simulator.gameSeed(masterSeed, games));
+				int seat = firstSeat ? 0 : 1;
+				halfWins += outcome.getWinnerSeat() < 0 ? 1 : outcome.getWinnerSeat() == seat ? 2 : 0;
+			}
+			evaluation = new Evaluation(halfWins, games, games == gamesPerDeck);
+			if (!evaluation.isComplete() && evaluation.upperBound() < threshold) {
+				break;
+			}
+		}
+		cache.put(key, evaluation);
+		return evaluation;
+	}
+
+	private double score(int[] counts) {
+		Evaluation e = cache.get(key(counts));
+		// abandoned evaluations rank below all complete ones
+		return e.isComplete() ? e.getWinRate() : e.getWinRate() - 1;
+	}
+
+	/**
+	 * Starts the search from a deck and random variations of it.
+	 */
+	public void seed(int[] counts, int populationSize) throws InterruptedException, ExecutionException {
+		population = new ArrayList<>();
+		population.add(counts.clone());
+		while (population.size() < populationSize) {
+			population.add(mutate(counts));
+		}
+		evaluateAll(population, 0);
+		sortPopulation();
+	}
+
+	/**
+	 * Breeds and evaluates children of the population, then keeps the best of parents and children. Fewer
+	 * children are bred when the decks within reach of the population are running out.
+	 */
+	public void nextGeneration(int childCount) throws InterruptedException, ExecutionException {
+		int populationSize = population.size();
+		List<int[]> children = new ArrayList<>();
+		int attempts = childCount * ATTEMPTS_PER_CHILD;
+		while (children.size() < childCount && attempts-- > 0) {
+			int[] a = population.get(random.nextInt(populationSize));
+			int[] b = population.get(random.nextInt(populationSize));
+			int[] child = mutate(crossover(a, b));
+			if (!containsDeck(population, child) && !containsDeck(children, child)) {
+				children.add(child);
+			}
+		}
+
+		Evaluation worstKept = cache.get(key(population.get(populationSize - 1)));
+		evaluateAll(children, worstKept.isComplete() ? worstKept.getWinRate() : 0);
+
+		population.addAll(children);
+		sortPopulation();
+		population = new ArrayList<>(population.subList(0, populationSize));
+		generation++;
+	}
+
+	private static boolean containsDeck(List<int[]> decks, int[] counts) {
+		return decks.stream()
+				.anyMatch(d -> Arrays.equals(d, counts));
+	}
+
+	private void sortPopulation() {
+		population.sort(Comparator.comparingDouble(this::score)
+				.reversed());
+	}
+
+	private void evaluateAll(List<int[]> decks, double threshold) throws InterruptedException, ExecutionException {
+		List<Future<Evaluation>> results = new ArrayList<>();
+		for (int[] counts : decks) {
+			results.add(executor.submit(() -> evaluate(counts, threshold)));
+		}
+		for (Future<Evaluation> f : results) {
+			f.get();
+		}
+	}
+
+	private int[] crossover(int[] a, int[] b) {
+		int[] child = new int[a.length];
+		for (int i = 0; i < child.length; i++) {
+			child[i] = random.nextBoolean() ? a[i] : b[i];
+		}
+
+		// back to the deck size
+		int size = Arrays.stream(child)
+				.sum();
+		while (size > deckSize) {
+			int i = random.nextInt(child.length);
+			if (child[i] > 0) {
+				child[i]--;
+				size--;
+			}
+		}
+		while (size < deckSize) {
+			int i = random.nextInt(child.length);
+			if (child[i] < maxCopies) {
+				child[i]++;
+				size++;
+			}
+		}
+		return child;
+	}
+
+	/**
+	 * @return a copy of the deck in which one to three cards were replaced by other pool cards
+	 */
+	private int[] mutate(int[] counts) {
+		int[] mutated = counts.clone();
+		int swaps = 1 + random.nextInt(3);
+		for (int s = 0; s < swaps; s++) {
+			int from = random.nextInt(mutated.length);
+			int to = random.nextInt(mutated.length);
+			if (from != to && mutated[from] > 0 && mutated[to] < maxCopies) {
+				mutated[from]--;
+				mutated[to]++;
+			}
+		}
+		return mutated;
+	}
+
+	/**
+	 * Saves the generation, the population and all evaluations, replacing the file atomically.
+	 */
+	public void saveCheckpoint(Path file) throws IOException {
+		Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (BufferedWriter w = Files.newBufferedWriter(tmp, UTF_8)) {
+			w.write("generation " + generation + "\n");
+			for (int[] counts : population) {
+				w.write("member " + key(counts) + "\n");
+			}
+			for (Map.Entry<String, Evaluation> e : cache.entrySet()) {
+				Evaluation ev = e.getValue();
+				w.write("evaluation " + e.getKey() + " " + ev.getHalfWins() + " " + ev.getGames() + " "
+						+ ev.isComplete() + "\n");
+			}
+		}
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Resumes a search saved with {@link #saveCheckpoint(Path)} by an optimizer with the same pool, reference
+	 * deck, policy, games per deck and seed.
+	 */
+	public void loadCheckpoint(Path file) throws IOException {
+		List<int[]> members = new ArrayList<>();
+		try (BufferedReader r = Files.newBufferedReader(file, UTF_8)) {
+			String line;
+			while ((line = r.readLine()) != null) {
+				String[] fields = line.split(" ");
+				switch (fields[0]) {
+				case "generation":
+					generation = Integer.parseInt(fields[1]);
+					break;
+				case "member":
+					members.add(parseKey(fields[1]));
+					break;
+				case "evaluation":
+					cache.put(fields[1], new Evaluation(Integer.parseInt(fields[2]), Integer.parseInt(fields[3]),
+							Boolean.parseBoolean(fields[4])));
+					break;
+				default:
+					throw new IOException("Unexpected checkpoint line '" + line + "'");
+				}
+			}
+		}
+		for (int[] counts : members) {
+			if (counts.length != pool.size()) {
+				throw new IOException("Checkpoint decks do not match a pool of " + pool.size() + " cards");
+			}
+		}
+		population = members;
+		// the breeding choices differ from an uninterrupted run, but stay reproducible
+		random.setSeed(masterSeed + generation);
+	}
+
+	public String describe(int[] counts) {
+		StringBuilder description = new StringBuilder();
+		for (int i = 0; i < counts.length; i++) {
+			if (counts[i] > 0) {
+				Card c = pool.get(i);
+				description.append(counts[i])
+						.append(" x ")
+						.append(c.getName())
+						.append(" (row ")
+						.append(c.getTargetRow())
+						.append(", ")
+						.append(c.getEffect()
+								.map(e -> e.getLabel())
+								.orElse(String.valueOf(c.getValue())))
+						.append(")\n");
+			}
+		}
+		return description.toString();
+	}
+
+	@Override
+	public void close() {
+		executor.shutdown();
+	}
+
+	/**
+	 * usage: optimize [generations] [games per deck] [threads] [checkpoint file]
+	 */
+	public static void main(String[] args) throws Exception {
+		int generations = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+		int gamesPerDeck = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+		int threads = args.length > 2 ? Integer.parseInt(args[2])
+				: Runtime.getRuntime()
+						.availableProcessors();
+		Path checkpoint = args.length > 3 ? Paths.get(args[3]) : null;
+
+		InitialDeck reference = new DeckBuilder().balancedDeck();
+		List<Card> pool = poolOf(reference);
+		int populationSize = 16;
+
+		try (DeckOptimizer optimizer = new DeckOptimizer(pool, reference.getCards()
+				.size(), 3, reference, new GreedyPolicy(), gamesPerDeck, threads, 1)) {
+			if (checkpoint != null && Files.exists(checkpoint)) {
+				optimizer.loadCheckpoint(checkpoint);
+				System.out.println("resuming at generation " + optimizer.getGeneration());
+			} else {
+				optimizer.seed(optimizer.countsOf(reference), populationSize);
+			}
+
+			while (optimizer.getGeneration() < generations) {
+				long start = System.nanoTime();
+				optimizer.nextGeneration(2 * populationSize);
+				int[] best = optimizer.getPopulation()
+						.get(0);
+				System.out.printf("generation %d: best win rate %.3f, %d decks evaluated, %.1f s%n",
+						optimizer.getGeneration(), optimizer.getEvaluation(best)
+								.getWinRate(),
+						optimizer.cache.size(), (System.nanoTime() - start) / 1e9);
+				if (checkpoint != null) {
+					optimizer.saveCheckpoint(checkpoint);
+				}
+			}
+
+			System.out.println("best deck:");
+			System.out.print(optimizer.describe(optimizer.getPopulation()
+					.get(0)));
+		}
+	}
+}
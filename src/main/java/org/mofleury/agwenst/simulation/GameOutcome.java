@@ -0,0 +1,20 @@
+package org.mofleury.agwenst.simulation;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+@RequiredArgsConstructor
+@Getter
+@ToString
+public class GameOutcome {
+
+	private final long seed;
+
+	/**
+	 * seat of the winner, -1 for a draw
+	 */
+	private final int winnerSeat;
+
+	private final int moves;
+}
@@ -0,0 +1,40 @@
+package org.mofleury.agwenst.simulation;
+
+import java.util.Random;
+
+import org.mofleury.agwenst.domain.live.Hand;
+import org.mofleury.agwenst.domain.still.Card;
+import org.mofleury.agwenst.domain.still.CardCatalog;
+import org.mofleury.agwenst.domain.still.CardType;
+import org.mofleury.agwenst.engine.Game;
+import org.mofleury.agwenst.engine.Round;
+
+/**
+ * Passes as soon as it leads a passed opponent, otherwise plays its strongest unit card.
+ */
+public class GreedyPolicy implements PlayerPolicy {
+
+	@Override
+	public int chooseMove(Game game, Random random) {
+		Round round = game.getRound();
+		int seat = round.getCurrentSeat();
+		if (round.hasPassed(round.getOtherSeat()) && round.getScore(seat) > round.getScore(round.getOtherSeat())) {
+			return Game.PASS;
+		}
+
+		Hand hand = game.getHand(seat);
+		Card best = null;
+		for (int i = 0; i < hand.distinctCount(); i++) {
+			Card c = CardCatalog.getInstance()
+					.get(hand.distinctId(i));
+			if (best == null || strength(c) > strength(best)) {
+				best = c;
+			}
+		}
+		return best == null ? Game.PASS : Game.cardMove(best.getId());
+	}
+
+	private int strength(Card c) {
+		return c.getType() == CardType.UNIT ? c.getValue() : -1;
+	}
+}
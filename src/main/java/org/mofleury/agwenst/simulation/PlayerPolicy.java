@@ -0,0 +1,16 @@
+package org.mofleury.agwenst.simulation;
+
+import java.util.Random;
+
+import org.mofleury.agwenst.engine.Game;
+
+/**
+ * Decides the next action of the current player of a game.
+ */
+public interface PlayerPolicy {
+
+	/**
+	 * @return the move code of a legal move, as listed by {@link Game#generateMoves(int[])}
+	 */
+	int chooseMove(Game game, Random random);
+}
@@ -0,0 +1,31 @@
+package org.mofleury.agwenst.simulation;
+
+import java.util.Random;
+
+import org.mofleury.agwenst.domain.live.Hand;
+import org.mofleury.agwenst.engine.Game;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Plays a uniformly chosen card from the hand, passing with a fixed probability.
+ */
+@RequiredArgsConstructor
+public class RandomPolicy implements PlayerPolicy {
+
+	private final double passProbability;
+
+	public RandomPolicy() {
+		this(0.1);
+	}
+
+	@Override
+	public int chooseMove(Game game, Random random) {
+		Hand hand = game.getHand(game.getRound()
+				.getCurrentSeat());
+		if (hand.isEmpty() || random.nextDouble() < passProbability) {
+			return Game.PASS;
+		}
+		return Game.cardMove(hand.idAt(random.nextInt(hand.size())));
+	}
+}
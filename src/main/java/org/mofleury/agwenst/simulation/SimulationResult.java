@@ -0,0 +1,60 @@
+package org.mofleury.agwenst.simulation;
+
+import lombok.Getter;
+
+/**
+ * Aggregated outcome of a batch of simulated games.
+ */
+@Getter
+public class SimulationResult {
+
+	private long games;
+	private long moves;
+	private final long[] wins = new long[2];
+	private long draws;
+
+	private long elapsedNanos;
+
+	void record(GameOutcome outcome) {
+		games++;
+		moves += outcome.getMoves();
+		if (outcome.getWinnerSeat() < 0) {
+			draws++;
+		} else {
+			wins[outcome.getWinnerSeat()]++;
+		}
+	}
+
+	SimulationResult merge(SimulationResult other) {
+		games += other.games;
+		moves += other.moves;
+		wins[0] += other.wins[0];
+		wins[1] += other.wins[1];
+		draws += other.draws;
+		return this;
+	}
+
+	void setElapsedNanos(long elapsedNanos) {
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	public double getGamesPerSecond() {
+		return games * 1e9 / Math.max(1, elapsedNanos);
+	}
+
+	public double getMovesPerSecond() {
+		return moves * 1e9 / Math.max(1, elapsedNanos);
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+				"%d games, %d moves in %.3f s%n%.0f games/s, %.0f moves/s%nseat 0 wins: %.2f%%, seat 1 wins: %.2f%%, draws: %.2f%%",
+				games, moves, elapsedNanos / 1e9, getGamesPerSecond(), getMovesPerSecond(), percent(wins[0]),
+				percent(wins[1]), percent(draws));
+	}
+
+	private double percent(long count) {
+		return games == 0 ? 0 : 100.0 * count / games;
+	}
+}
@@ -0,0 +1,226 @@
+package org.mofleury.agwenst.simulation;
+
+import static java.util.Arrays.asList;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.mofleury.agwenst.DeckBuilder;
+import org.mofleury.agwenst.domain.still.InitialDeck;
+import org.mofleury.agwenst.domain.still.Player;
+import org.mofleury.agwenst.engine.Game;
+import org.mofleury.agwenst.persistence.SampleWriter;
+
+/**
+ * Plays complete games between two policies without any user interface, spreading them over a fork-join
+ * pool. Every game gets its own seed derived from the master seed and its index, so that any single game
+ * can be replayed alone with {@link #playGame(long)}.
+ */
+public class Simulator {
+
+	private static final int GAMES_PER_TASK = 256;
+
+	private final PlayerPolicy[] policies;
+	private final InitialDeck[] decks;
+	private final List<Player> players;
+	private final int parallelism;
+
+	public Simulator(PlayerPolicy policy0, PlayerPolicy policy1, InitialDeck deck0, InitialDeck deck1,
+			int parallelism) {
+		this.policies = new PlayerPolicy[] { policy0, policy1 };
+		this.decks = new InitialDeck[] { deck0, deck1 };
+		this.players = asList(new Player("seat0"), new Player("seat1"));
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * SplitMix64 finalizer, used to derive well spread independent seeds from a master seed.
+	 */
+	public static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	public static long gameSeed(long masterSeed, long gameIndex) {
+		return mix(masterSeed + (gameIndex + 1) * 0x9e3779b97f4a7c15L);
+	}
+
+	public Game newGame(long seed) {
+		Map<Player, InitialDeck> initialDecks = new HashMap<>();
+		initialDecks.put(players.get(0), decks[0]);
+		initialDecks.put(players.get(1), decks[1]);
+		return new Game(seed, players, initialDecks);
+	}
+
+	public GameOutcome playGame(long seed) {
+		return playGame(seed, null);
+	}
+
+	/**
+	 * @param samples
+	 *            where to record every decision of the game, null for none
+	 */
+	public GameOutcome playGame(long seed, SampleWriter samples) {
+		Game game = newGame(seed);
+		Random random = new Random(mix(seed));
+		if (samples != null) {
+			samples.startGame(seed);
+		}
+
+		int moves = 0;
+		while (!game.gameOver()) {
+			int seat = game.getRound()
+					.getCurrentSeat();
+			int move = policies[seat].chooseMove(game, random);
+			if (samples != null) {
+				samples.record(game, move);
+			}
+			int roundCounter = game.getRoundCounter();
+			int victories = game.getVictories(seat);
+			if (!game.applyMove(move)) {
+				throw new IllegalStateException("Policy of seat " + seat + " chose the illegal move " + move);
+			}
+			if (samples != null && game.getRoundCounter() != roundCounter) {
+				samples.roundEnded(game.getVictories(seat) != victories ? seat : 1 - seat);
+			}
+			moves++;
+		}
+		if (samples != null) {
+			samples.gameEnded(game.getWinnerSeat());
+		}
+		return new GameOutcome(seed, game.getWinnerSeat(), moves);
+	}
+
+	public SimulationResult run(long masterSeed, long games) {
+		return run(masterSeed, games, null);
+	}
+
+	/**
+	 * Plays the games and writes a training sample per decision to the given directory, in one
+	 * {@link SampleWriter} file per thread.
+	 */
+	public SimulationResult export(long masterSeed, long games, Path directory) throws IOException {
+		try (SampleFiles files = new SampleFiles(directory)) {
+			return run(masterSeed, games, files);
+		}
+	}
+
+	private SimulationResult run(long masterSeed, long games, SampleFiles files) {
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			long start = System.nanoTime();
+			SimulationResult result = pool.invoke(new SimulationTask(masterSeed, 0, games, files));
+			result.setElapsedNanos(System.nanoTime() - start);
+			return result;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Sample files of the threads of a simulation, created as threads first need one.
+	 */
+	private static class SampleFiles implements Closeable {
+
+		private final Path directory;
+		private final List<SampleWriter> writers = new ArrayList<>();
+		private final ThreadLocal<SampleWriter> writer = new ThreadLocal<>();
+
+		SampleFiles(Path directory) throws IOException {
+			this.directory = Files.createDirectories(directory);
+		}
+
+		SampleWriter forCurrentThread() {
+			SampleWriter w = writer.get();
+			if (w == null) {
+				synchronized (writers) {
+					try {
+						w = SampleWriter.create(directory.resolve("samples-" + writers.size() + ".bin"));
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+					writers.add(w);
+				}
+				writer.set(w);
+			}
+			return w;
+		}
+
+		@Override
+		public void close() throws IOException {
+			synchronized (writers) {
+				for (SampleWriter w : writers) {
+					w.close();
+				}
+			}
+		}
+	}
+
+	private class SimulationTask extends RecursiveTask<SimulationResult> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final long masterSeed;
+		private final long from;
+		private final long to;
+		private final SampleFiles files;
+
+		SimulationTask(long masterSeed, long from, long to, SampleFiles files) {
+			this.masterSeed = masterSeed;
+			this.from = from;
+			this.to = to;
+			this.files = files;
+		}
+
+		@Override
+		protected SimulationResult compute() {
+			if (to - from <= GAMES_PER_TASK) {
+				SimulationResult result = new SimulationResult();
+				SampleWriter samples = files == null ? null : files.forCurrentThread();
+				for (long i = from; i < to; i++) {
+					result.record(playGame(gameSeed(masterSeed, i), samples));
+				}
+				return result;
+			}
+			long middle = (from + to) >>> 1;
+			SimulationTask left = new SimulationTask(masterSeed, from, middle, files);
+			left.fork();
+			SimulationResult right = new SimulationTask(masterSeed, middle, to, files).compute();
+			return left.join()
+					.merge(right);
+		}
+	}
+
+	/**
+	 * usage: simulate [games] [master seed] [threads] [directory to export training samples to]
+	 */
+	public static void main(String[] args) throws IOException {
+		long games = args.length > 0 ? Long.parseLong(args[0]) : 100_000;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : System.currentTimeMillis();
+		int threads = args.length > 2 ? Integer.parseInt(args[2])
+				: Runtime.getRuntime()
+						.availableProcessors();
+
+		InitialDeck deck = new DeckBuilder().balancedDeck();
+		Simulator simulator = new Simulator(new GreedyPolicy(), new RandomPolicy(), deck, deck, threads);
+
+		System.out.println("simulating " + games + " games with master seed " + seed + " on " + threads + " threads");
+		if (args.length > 3) {
+			System.out.println(simulator.export(seed, games, Paths.get(args[3])));
+		} else {
+			System.out.println(simulator.run(seed, games));
+		}
+	}
+}
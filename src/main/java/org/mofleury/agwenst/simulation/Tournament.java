@@ -0,0 +1,327 @@
+package org.mofleury.agwenst.simulation;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.mofleury.agwenst.DeckBuilder;
+import org.mofleury.agwenst.domain.still.InitialDeck;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Round-robin tournament between entrants, each a policy playing a deck.
+ * <p>
+ * Pairings are played in parallel. Games come in pairs dealt from the same seed, the entrants swapping seats
+ * between the two, which cancels out both the first move advantage and the luck of the deal. A pairing stops
+ * as soon as a sequential probability ratio test decides which entrant is stronger, or after a maximum number
+ * of games. Pairing results are written as CSV lines as soon as they are known. Policies are shared by the
+ * pairings, so they must be thread safe.
+ */
+public class Tournament {
+
+	// the SPRT tells apart an expected score of 0.5 + DELTA from 0.5 - DELTA
+	private static final double DELTA = 0.05;
+	private static final double ALPHA = 0.05;
+	private static final double BETA = 0.05;
+
+	private static final double UPPER_BOUND = Math.log((1 - BETA) / ALPHA);
+	private static final double LOWER_BOUND = Math.log(BETA / (1 - ALPHA));
+	private static final double WIN_LLR = Math.log((0.5 + DELTA) / (0.5 - DELTA));
+
+	public static final String CSV_HEADER = "first,second,games,first wins,second wins,draws,first score,verdict";
+
+	@RequiredArgsConstructor
+	@Getter
+	public static class Entrant {
+		private final String name;
+		private final PlayerPolicy policy;
+		private final InitialDeck deck;
+	}
+
+	public enum Verdict {
+		FIRST_STRONGER, SECOND_STRONGER, UNDECIDED
+	}
+
+	@RequiredArgsConstructor
+	@Getter
+	public static class PairingResult {
+		private final int first;
+		private final int second;
+		private final int firstWins;
+		private final int secondWins;
+		private final int draws;
+		private final Verdict verdict;
+
+		public int getGames() {
+			return firstWins + secondWins + draws;
+		}
+
+		/**
+		 * @return the share of the points won by the first entrant, draws counting as half a win
+		 */
+		public double getFirstScore() {
+			return (firstWins + draws / 2.0) / getGames();
+		}
+	}
+
+	private final List<Entrant> entrants = new ArrayList<>();
+	private final int maxGames;
+	private final int threads;
+	private final long masterSeed;
+
+	/**
+	 * @param maxGames
+	 *            games after which an undecided pairing stops, rounded up to an even number
+	 */
+	public Tournament(int maxGames, int threads, long masterSeed) {
+		this.maxGames = maxGames + maxGames % 2;
+		this.threads = threads;
+		this.masterSeed = masterSeed;
+	}
+
+	public Tournament add(String name, PlayerPolicy policy, InitialDeck deck) {
+		entrants.add(new Entrant(name, policy, deck));
+		return this;
+	}
+
+	public List<Entrant> getEntrants() {
+		return entrants;
+	}
+
+	/**
+	 * Plays every pairing once.
+	 *
+	 * @param csv
+	 *            where pairing results are written as they complete, with a header line, null for none
+	 */
+	public List<PairingResult> run(Writer csv) throws InterruptedException {
+		if (csv != null) {
+			writeLine(csv, CSV_HEADER);
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<PairingResult>> futures = new ArrayList<>();
+			for (int a = 0; a < entrants.size(); a++) {
+				for (int b = a + 1; b < entrants.size(); b++) {
+					int first = a;
+					int second = b;
+					futures.add(executor.submit(() -> {
+						PairingResult result = play(first, second);
+						if (csv != null) {
+							writeLine(csv, toCsv(result));
+						}
+						return result;
+					}));
+				}
+			}
+
+			List<PairingResult> results = new ArrayList<>();
+			for (Future<PairingResult> f : futures) {
+				results.add(f.get());
+			}
+			return results;
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static void writeLine(Writer csv, String line) {
+		synchronized (csv) {
+			try {
+				csv.write(line);
+				csv.write('\n');
+				csv.flush();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	private String toCsv(PairingResult r) {
+		return entrants.get(r.getFirst())
+				.getName() + ","
+				+ entrants.get(r.getSecond())
+						.getName()
+				+ "," + r.getGames() + "," + r.getFirstWins() + "," + r.getSecondWins() + "," + r.getDraws() + ","
+				+ String.format("%.4f", r.getFirstScore()) + "," + r.getVerdict();
+	}
+
+	PairingResult play(int first, int second) {
+		Entrant a = entrants.get(first);
+		Entrant b = entrants.get(second);
+		Simulator firstSeated = new Simulator(a.getPolicy(), b.getPolicy(), a.getDeck(), b.getDeck(), 1);
+		Simulator secondSeated = new Simulator(b.getPolicy(), a.getPolicy(), b.getDeck(), a.getDeck(), 1);
+
+		int[] wins = new int[2];
+		int draws = 0;
+		Verdict verdict = Verdict.UNDECIDED;
+		for (long pair = 0; pair < maxGames / 2; pair++) {
+			long seed = Simulator.gameSeed(masterSeed, pair);
+
+			int winner = firstSeated.playGame(seed)
+					.getWinnerSeat();
+			if (winner < 0) {
+				draws++;
+			} else {
+				wins[winner]++;
+			}
+
+			winner = secondSeated.playGame(seed)
+					.getWinnerSeat();
+			if (winner < 0) {
+				draws++;
+			} else {
+				wins[1 - winner]++;
+			}
+
+			// draws bring no evidence either way
+			double llr = (wins[0] - wins[1]) * WIN_LLR;
+			if (llr >= UPPER_BOUND) {
+				verdict = Verdict.FIRST_STRONGER;
+				break;
+			}
+			if (llr <= LOWER_BOUND) {
+				verdict = Verdict.SECOND_STRONGER;
+				break;
+			}
+		}
+		return new PairingResult(first, second, wins[0], wins[1], draws, verdict);
+	}
+
+	/**
+	 * @return the score of each entrant (row) against each other (column), NaN on the diagonal
+	 */
+	public double[][] scoreMatrix(List<PairingResult> results) {
+		int n = entrants.size();
+		double[][] matrix = new double[n][n];
+		for (int i = 0; i < n; i++) {
+			matrix[i][i] = Double.NaN;
+		}
+		for (PairingResult r : results) {
+			matrix[r.getFirst()][r.getSecond()] = r.getFirstScore();
+			matrix[r.getSecond()][r.getFirst()] = 1 - r.getFirstScore();
+		}
+		return matrix;
+	}
+
+	/**
+	 * Fits Bradley-Terry strengths to the results by minorization-maximization, each pairing getting half a
+	 * win per side as a prior so that unbeaten or winless entrants keep a finite rating.
+	 *
+	 * @return the Elo rating of each entrant, averaging 0
+	 */
+	public double[] eloRatings(List<PairingResult> results) {
+		int n = entrants.size();
+		double[] points = new double[n];
+		double[][] games = new double[n][n];
+		for (PairingResult r : results) {
+			points[r.getFirst()] += r.getFirstWins() + r.getDraws() / 2.0 + 0.5;
+			points[r.getSecond()] += r.getSecondWins() + r.getDraws() / 2.0 + 0.5;
+			games[r.getFirst()][r.getSecond()] += r.getGames() + 1;
+			games[r.getSecond()][r.getFirst()] += r.getGames() + 1;
+		}
+
+		double[] strength = new double[n];
+		Arrays.fill(strength, 1);
+		for (int iteration = 0; iteration < 1000; iteration++) {
+			double[] next = new double[n];
+			double logSum = 0;
+			for (int i = 0; i < n; i++) {
+				double denominator = 0;
+				for (int j = 0; j < n; j++) {
+					if (games[i][j] > 0) {
+						denominator += games[i][j] / (strength[i] + strength[j]);
+					}
+				}
+				next[i] = denominator == 0 ? 1 : points[i] / denominator;
+				logSum += Math.log(next[i]);
+			}
+			// normalize to a geometric mean of 1
+			double scale = Math.exp(logSum / n);
+			for (int i = 0; i < n; i++) {
+				strength[i] = next[i] / scale;
+			}
+		}
+
+		double[] elo = new double[n];
+		for (int i = 0; i < n; i++) {
+			elo[i] = 400 * Math.log10(strength[i]);
+		}
+		return elo;
+	}
+
+	public String report(List<PairingResult> results) {
+		double[][] matrix = scoreMatrix(results);
+		double[] elo = eloRatings(results);
+
+		StringBuilder report = new StringBuilder();
+		report.append(String.format("%-20s", ""));
+		for (int j = 0; j < entrants.size(); j++) {
+			report.append(String.format("%8d", j));
+		}
+		report.append(String.format("%8s%n", "Elo"));
+		for (int i = 0; i < entrants.size(); i++) {
+			report.append(String.format("%-20s", i + " " + entrants.get(i)
+					.getName()));
+			for (int j = 0; j < entrants.size(); j++) {
+				report.append(i == j ? String.format("%8s", "-") : String.format("%8.3f", matrix[i][j]));
+			}
+			report.append(String.format("%8.0f%n", elo[i]));
+		}
+		return report.toString();
+	}
+
+	/**
+	 * usage: tournament [max games per pairing] [threads] [csv file, - for the standard output]
+	 */
+	public static void main(String[] args) throws Exception {
+		int maxGames = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+		int threads = args.length > 1 ? Integer.parseInt(args[1])
+				: Runtime.getRuntime()
+						.availableProcessors();
+		String csvFile = args.length > 2 ? args[2] : null;
+
+		DeckBuilder decks = new DeckBuilder();
+		Tournament tournament = new Tournament(maxGames, threads, System.currentTimeMillis())
+				.add("greedy balanced", new GreedyPolicy(), decks.balancedDeck())
+				.add("random balanced", new RandomPolicy(), decks.balancedDeck())
+				.add("cautious balanced", new RandomPolicy(0.02), decks.balancedDeck())
+				.add("greedy simple", new GreedyPolicy(), decks.simpleDeck(1, 12))
+				.add("random simple", new RandomPolicy(), decks.simpleDeck(1, 12));
+
+		Writer csv = csvFile == null ? null
+				: csvFile.equals("-") ? new OutputStreamWriter(System.out, StandardCharsets.UTF_8)
+						: Files.newBufferedWriter(Paths.get(csvFile), StandardCharsets.UTF_8);
+		long start = System.nanoTime();
+		List<PairingResult> results;
+		try {
+			results = tournament.run(csv);
+		} finally {
+			if (csv != null && csv instanceof BufferedWriter) {
+				csv.close();
+			}
+		}
+		long games = results.stream()
+				.mapToLong(PairingResult::getGames)
+				.sum();
+		System.out.printf("%d games in %.1f s%n", games, (System.nanoTime() - start) / 1e9);
+		System.out.print(tournament.report(results));
+	}
+}
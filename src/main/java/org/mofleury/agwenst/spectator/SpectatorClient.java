@@ -0,0 +1,78 @@
+package org.mofleury.agwenst.spectator;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+
+import lombok.Getter;
+
+/**
+ * Minimal spectator, following a game from a {@link SpectatorHub} through blocking reads.
+ */
+public class SpectatorClient implements Closeable {
+
+	private final Socket socket;
+	private final DataInputStream in;
+
+	@Getter
+	private final SpectatorView view = new SpectatorView();
+	@Getter
+	private long bytesRead;
+
+	public SpectatorClient(String host, int port) throws IOException {
+		socket = new Socket(host, port);
+		in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+	}
+
+	/**
+	 * Reads a frame and applies it to the view.
+	 *
+	 * @return the kind of the frame
+	 */
+	public byte readFrame() throws IOException {
+		int length = in.readInt();
+		ByteBuffer frame = ByteBuffer.allocate(4 + length);
+		frame.putInt(length);
+		in.readFully(frame.array(), 4, length);
+		frame.rewind();
+		bytesRead += frame.capacity();
+		byte kind = frame.get(4);
+		view.apply(frame);
+		return kind;
+	}
+
+	/**
+	 * Reads frames until the view reaches a sequence.
+	 */
+	public void awaitSequence(long sequence) throws IOException {
+		while (view.getSequence() < sequence) {
+			readFrame();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		socket.close();
+	}
+
+	/**
+	 * spectate [host] [port]: prints the game after every move
+	 */
+	public static void main(String[] args) throws IOException {
+		String host = args.length > 0 ? args[0] : "localhost";
+		int port = args.length > 1 ? Integer.parseInt(args[1]) : 4243;
+		try (SpectatorClient client = new SpectatorClient(host, port)) {
+			while (true) {
+				if (client.readFrame() != SpectatorView.CARDS) {
+					System.out.println(client.getView());
+				}
+			}
+		} catch (EOFException e) {
+			System.out.println("The game is over");
+		}
+	}
+}
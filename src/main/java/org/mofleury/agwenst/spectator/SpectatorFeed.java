@@ -0,0 +1,89 @@
+package org.mofleury.agwenst.spectator;
+
+import java.nio.ByteBuffer;
+import java.util.function.Supplier;
+
+import org.mofleury.agwenst.domain.still.CardCatalog;
+import org.mofleury.agwenst.engine.Game;
+import org.mofleury.agwenst.engine.GameState;
+import org.mofleury.agwenst.events.GameEvent;
+import org.mofleury.agwenst.events.GameEventHandler;
+
+/**
+ * Turns the moves of a game into frames for a {@link SpectatorHub}: one delta per move, whatever the number
+ * of spectators, and a keyframe every few moves. Frames are written from the versions the game publishes,
+ * see {@link Game#getState()}, so rows a move did not touch are skipped without being compared.
+ * <p>
+ * The events of the game only tell the feed when to look at the latest version, on the thread of an
+ * {@link org.mofleury.agwenst.events.EventConsumer}: moves read together make a single frame, and lost events
+ * are caught up with the next one. A loaded game starts with a keyframe.
+ */
+public class SpectatorFeed implements GameEventHandler {
+
+	private final Supplier<GameState> states;
+	private final SpectatorHub hub;
+	private final int keyframeInterval;
+
+	// what the spectators know once they read the last frame
+	private final SpectatorView view = new SpectatorView();
+	private final ByteBuffer scratch = ByteBuffer.allocate(1 << 16);
+
+	// version the last frame was written from, null before the first one
+	private GameState sent;
+	private long sequence;
+	// catalog cards already defined to the spectators
+	private int cardsSent;
+
+	/**
+	 * Publishes a first keyframe of the game if it already published a version.
+	 *
+	 * @param states
+	 *            latest version of the game, null while there is none
+	 * @param keyframeInterval
+	 *            number of frames from one keyframe to the next
+	 */
+	public SpectatorFeed(Supplier<GameState> states, SpectatorHub hub, int keyframeInterval) {
+		this.states = states;
+		this.hub = hub;
+		this.keyframeInterval = keyframeInterval;
+		publishLatest(false);
+	}
+
+	@Override
+	public void onEvent(GameEvent event) {
+		publishLatest(event.getType() == GameEvent.Type.GAME_LOADED);
+	}
+
+	private void publishLatest(boolean keyframe) {
+		GameState state = states.get();
+		if (state == null || state == sent) {
+			return;
+		}
+		publish(keyframe || sequence % keyframeInterval == 0 ? SpectatorView.KEYFRAME : SpectatorView.DELTA, state);
+		sent = state;
+	}
+
+	private void publish(byte kind, GameState state) {
+		long frameSequence = sequence++;
+		int catalogSize = CardCatalog.getInstance()
+				.size();
+		if (cardsSent < catalogSize) {
+			scratch.clear();
+			SpectatorView.writeCards(scratch, frameSequence, cardsSent);
+			hub.publish(copy(scratch));
+			cardsSent = catalogSize;
+		}
+
+		scratch.clear();
+		view.writeFrame(scratch, kind, frameSequence, state);
+		hub.publish(copy(scratch));
+	}
+
+	private static ByteBuffer copy(ByteBuffer scratch) {
+		scratch.flip();
+		ByteBuffer frame = ByteBuffer.allocate(scratch.remaining());
+		frame.put(scratch);
+		frame.flip();
+		return frame;
+	}
+}
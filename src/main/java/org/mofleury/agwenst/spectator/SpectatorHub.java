@@ -0,0 +1,258 @@
+package org.mofleury.agwenst.spectator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import lombok.Getter;
+
+/**
+ * Broadcasts the frames of a {@link SpectatorFeed} to every connected spectator, from a selector event loop
+ * of its own.
+ * <p>
+ * Every spectator is sent the same bytes: frames are encoded once and only their read positions are per
+ * spectator. A spectator joining late gets the card definitions, the last keyframe and the deltas that
+ * followed it. A spectator so slow that too many frames are waiting for it is sent the same catch-up
+ * instead of the frames it missed.
+ */
+public class SpectatorHub implements Closeable {
+
+	static final int MAX_PENDING_FRAMES = 256;
+
+	private final ServerSocketChannel serverChannel;
+	private final Selector selector;
+	private final Thread loop;
+
+	private final Queue<ByteBuffer> published = new ConcurrentLinkedQueue<>();
+
+	// owned by the event loop
+	private final List<ByteBuffer> cardFrames = new ArrayList<>();
+	private ByteBuffer keyframe;
+	private final List<ByteBuffer> deltasSinceKeyframe = new ArrayList<>();
+	private final List<Spectator> spectators = new ArrayList<>();
+
+	@Getter
+	private final int port;
+	@Getter
+	private volatile int spectatorCount;
+
+	private volatile boolean running = true;
+
+	/**
+	 * Listens on the loopback interface only.
+	 *
+	 * @param port
+	 *            port to listen to, 0 to pick any free port
+	 */
+	public SpectatorHub(int port) throws IOException {
+		this(InetAddress.getLoopbackAddress(), port);
+	}
+
+	/**
+	 * @param address
+	 *            interface to listen on, the wildcard address for all of them
+	 */
+	public SpectatorHub(InetAddress address, int port) throws IOException {
+		selector = Selector.open();
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.bind(new InetSocketAddress(address, port), 1024);
+		serverChannel.configureBlocking(false);
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+		this.port = ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+
+		loop = new Thread(this::run, "spectator-hub");
+		loop.setDaemon(true);
+		loop.start();
+	}
+
+	/**
+	 * Queues a frame for all spectators. Safe to call from any thread; the frame must not be modified
+	 * afterwards.
+	 */
+	public void publish(ByteBuffer frame) {
+		published.add(frame);
+		selector.wakeup();
+	}
+
+	private void run() {
+		try {
+			while (running) {
+				selector.select();
+
+				ByteBuffer frame;
+				boolean sent = false;
+				while ((frame = published.poll()) != null) {
+					record(frame);
+					for (Spectator s : spectators) {
+						s.send(frame);
+					}
+					sent = true;
+				}
+				if (sent) {
+					for (int i = spectators.size() - 1; i >= 0; i--) {
+						spectators.get(i)
+								.flush();
+					}
+				}
+
+				Iterator<SelectionKey> keys = selector.selectedKeys()
+						.iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid()) {
+						continue;
+					}
+					if (key.isAcceptable()) {
+						accept();
+						continue;
+					}
+					Spectator spectator = (Spectator) key.attachment();
+					if (key.isReadable()) {
+						spectator.read();
+					}
+					if (key.isValid() && key.isWritable()) {
+						spectator.flush();
+					}
+				}
+			}
+		} catch (ClosedSelectorException e) {
+			// hub closed
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private void record(ByteBuffer frame) {
+		switch (frame.get(4)) {
+		case SpectatorView.CARDS:
+			cardFrames.add(frame);
+			break;
+		case SpectatorView.KEYFRAME:
+			keyframe = frame;
+			deltasSinceKeyframe.clear();
+			break;
+		default:
+			deltasSinceKeyframe.add(frame);
+			break;
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel;
+		while ((channel = serverChannel.accept()) != null) {
+			channel.configureBlocking(false);
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			Spectator spectator = new Spectator(channel, channel.register(selector, SelectionKey.OP_READ));
+			spectator.key.attach(spectator);
+			spectators.add(spectator);
+			spectatorCount = spectators.size();
+			spectator.catchUp();
+			spectator.flush();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		running = false;
+		serverChannel.close();
+		selector.close();
+	}
+
+	private class Spectator {
+
+		private final SocketChannel channel;
+		private final SelectionKey key;
+		private final ArrayDeque<ByteBuffer> pending = new ArrayDeque<>();
+		private final ByteBuffer readBuffer = ByteBuffer.allocate(256);
+
+		Spectator(SocketChannel channel, SelectionKey key) {
+			this.channel = channel;
+			this.key = key;
+		}
+
+		void send(ByteBuffer frame) {
+			if (pending.size() < MAX_PENDING_FRAMES) {
+				pending.add(frame.duplicate());
+				return;
+			}
+			// drop what is waiting, except a frame already partly written
+			ByteBuffer head = pending.peek();
+			pending.clear();
+			if (head.position() > 0) {
+				pending.add(head);
+			}
+			catchUp();
+		}
+
+		void catchUp() {
+			for (ByteBuffer f : cardFrames) {
+				pending.add(f.duplicate());
+			}
+			if (keyframe != null) {
+				pending.add(keyframe.duplicate());
+			}
+			for (ByteBuffer f : deltasSinceKeyframe) {
+				pending.add(f.duplicate());
+			}
+		}
+
+		/**
+		 * Spectators have nothing to say, their input is only read to notice when they leave.
+		 */
+		void read() {
+			try {
+				readBuffer.clear();
+				if (channel.read(readBuffer) < 0) {
+					close();
+				}
+			} catch (IOException e) {
+				close();
+			}
+		}
+
+		void flush() {
+			try {
+				while (!pending.isEmpty()) {
+					ByteBuffer head = pending.peek();
+					channel.write(head);
+					if (head.hasRemaining()) {
+						break;
+					}
+					pending.poll();
+				}
+				if (key.isValid()) {
+					key.interestOps(pending.isEmpty() ? SelectionKey.OP_READ
+							: SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+				}
+			} catch (IOException e) {
+				close();
+			}
+		}
+
+		void close() {
+			key.cancel();
+			try {
+				channel.close();
+			} catch (IOException e) {
+				// already closed
+			}
+			spectators.remove(this);
+			spectatorCount = spectators.size();
+		}
+	}
+}
@@ -0,0 +1,347 @@
+package org.mofleury.agwenst.spectator;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.mofleury.agwenst.domain.still.Card;
+import org.mofleury.agwenst.domain.still.CardCatalog;
+import org.mofleury.agwenst.engine.Game;
+import org.mofleury.agwenst.engine.GameState;
+import org.mofleury.agwenst.engine.GameState.RowState;
+import org.mofleury.agwenst.persistence.BinaryCodec;
+
+import lombok.Getter;
+
+/**
+ * What spectators know of a game: the board, pass flags, victories and hand sizes, but not the hands.
+ * <p>
+ * Views are updated by frames. A frame starts with its length on four bytes, which does not count itself,
+ * then comes its kind on one byte and its sequence on eight bytes. {@link #CARDS} frames define the cards
+ * of the catalog of the server from a given id on. {@link #DELTA} frames hold the changes from the previous
+ * frame: round counter, turn, pass flags, victories and hand sizes, then the special cards and every changed
+ * row, as a number of cards kept, new values for some of the kept cards, and cards added after them.
+ * {@link #KEYFRAME}s are deltas from an empty view, so they are read the same way after clearing the view.
+ */
+public class SpectatorView {
+
+	static final byte CARDS = 1;
+	static final byte KEYFRAME = 2;
+	static final byte DELTA = 3;
+
+	private static final int SEATS = 2;
+
+	/**
+	 * Growable list of cards, with their current value when on a row.
+	 */
+	private static class Line {
+		int[] ids = new int[16];
+		int[] values = new int[16];
+		int size;
+
+		void add(int id, int value) {
+			if (size == ids.length) {
+				ids = Arrays.copyOf(ids, size * 2);
+				values = Arrays.copyOf(values, size * 2);
+			}
+			ids[size] = id;
+			values[size] = value;
+			size++;
+		}
+	}
+
+	// card definitions of the server, by server id
+	private final List<Card> cards = new ArrayList<>();
+
+	@Getter
+	private long sequence = -1;
+	@Getter
+	private int roundCounter;
+	@Getter
+	private int currentSeat;
+	private int passedMask;
+	private final int[] victories = new int[SEATS];
+	private final int[] handSizes = new int[SEATS];
+	private final Line specials = new Line();
+	private final Line[][] rows = new Line[SEATS][Game.ROW_COUNT];
+	// rows of the version the last frame was written from, which the next versions share while unchanged
+	private final RowState[] writtenRows = new RowState[SEATS * Game.ROW_COUNT];
+
+	public SpectatorView() {
+		for (int seat = 0; seat < SEATS; seat++) {
+			for (int r = 0; r < Game.ROW_COUNT; r++) {
+				rows[seat][r] = new Line();
+			}
+		}
+	}
+
+	private void clear() {
+		roundCounter = 0;
+		currentSeat = 0;
+		passedMask = 0;
+		Arrays.fill(victories, 0);
+		Arrays.fill(handSizes, 0);
+		specials.size = 0;
+		for (Line[] seatRows : rows) {
+			for (Line row : seatRows) {
+				row.size = 0;
+			}
+		}
+	}
+
+	public boolean hasPassed(int seat) {
+		return (passedMask & 1 << seat) != 0;
+	}
+
+	public int getVictories(int seat) {
+		return victories[seat];
+	}
+
+	public int getHandSize(int seat) {
+		return handSizes[seat];
+	}
+
+	public int getScore(int seat) {
+		int score = 0;
+		for (int r = 0; r < Game.ROW_COUNT; r++) {
+			Line row = rows[seat][r];
+			for (int i = 0; i < row.size; i++) {
+				score += row.values[i];
+			}
+		}
+		return score;
+	}
+
+	/**
+	 * Writes a frame defining the cards of the catalog from an id on.
+	 */
+	static void writeCards(ByteBuffer out, long sequence, int firstId) {
+		int start = startFrame(out, CARDS, sequence);
+		CardCatalog catalog = CardCatalog.getInstance();
+		out.putShort((short) firstId);
+		out.putShort((short) (catalog.size() - firstId));
+		for (int id = firstId; id < catalog.size(); id++) {
+			BinaryCodec.putCard(out, catalog.get(id));
+		}
+		endFrame(out, start);
+	}
+
+	/**
+	 * Writes the frame turning this view into the view of a version of a game, then applies it, so that the
+	 * next delta starts from that version.
+	 *
+	 * @param kind
+	 *            {@link #DELTA}, or {@link #KEYFRAME} to describe the whole game
+	 */
+	void writeFrame(ByteBuffer out, byte kind, long sequence, GameState state) {
+		if (kind == KEYFRAME) {
+			clear();
+			Arrays.fill(writtenRows, null);
+		}
+		int start = startFrame(out, kind, sequence);
+
+		out.put((byte) state.getRoundCounter());
+		out.put((byte) state.getCurrentSeat());
+		int mask = 0;
+		for (int seat = 0; seat < SEATS; seat++) {
+			mask |= state.hasPassed(seat) ? 1 << seat : 0;
+		}
+		out.put((byte) mask);
+		for (int seat = 0; seat < SEATS; seat++) {
+			out.put((byte) state.getVictories(seat));
+			out.put((byte) state.getHand(seat)
+					.size());
+		}
+
+		List<Card> specialCards = state.getSpecialCards();
+		int keep = 0;
+		while (keep < specials.size && keep < specialCards.size() && specials.ids[keep] == specialCards.get(keep)
+				.getId()) {
+			keep++;
+		}
+		out.putShort((short) keep);
+		out.putShort((short) (specialCards.size() - keep));
+		for (int i = keep; i < specialCards.size(); i++) {
+			out.putShort((short) specialCards.get(i)
+					.getId());
+		}
+
+		int changedPosition = out.position();
+		out.put((byte) 0);
+		int changed = 0;
+		for (int seat = 0; seat < SEATS; seat++) {
+			for (int r = 0; r < Game.ROW_COUNT; r++) {
+				int index = seat * Game.ROW_COUNT + r;
+				RowState row = state.getRow(seat, r);
+				if (row != writtenRows[index] && writeRow(out, index, rows[seat][r], row)) {
+					changed++;
+				}
+				writtenRows[index] = row;
+			}
+		}
+		out.put(changedPosition, (byte) changed);
+
+		endFrame(out, start);
+
+		ByteBuffer frame = out.duplicate();
+		frame.limit(out.position());
+		frame.position(start);
+		apply(frame);
+	}
+
+	/**
+	 * @return false, having written nothing, if the row did not change
+	 */
+	private static boolean writeRow(ByteBuffer out, int index, Line row, RowState cards) {
+		int size = cards.getCardCount();
+		int keep = 0;
+		while (keep < row.size && keep < size && row.ids[keep] == cards.getCard(keep)
+				.getId()) {
+			keep++;
+		}
+		int changes = 0;
+		for (int i = 0; i < keep; i++) {
+			if (row.values[i] != cards.getValue(i)) {
+				changes++;
+			}
+		}
+		if (keep == row.size && keep == size && changes == 0) {
+			return false;
+		}
+
+		out.put((byte) index);
+		out.putShort((short) keep);
+		out.putShort((short) changes);
+		for (int i = 0; i < keep; i++) {
+			if (row.values[i] != cards.getValue(i)) {
+				out.putShort((short) i);
+				out.putInt(cards.getValue(i));
+			}
+		}
+		out.putShort((short) (size - keep));
+		for (int i = keep; i < size; i++) {
+			out.putShort((short) cards.getCard(i)
+					.getId());
+			out.putInt(cards.getValue(i));
+		}
+		return true;
+	}
+
+	private static int startFrame(ByteBuffer out, byte kind, long sequence) {
+		int start = out.position();
+		out.putInt(0);
+		out.put(kind);
+		out.putLong(sequence);
+		return start;
+	}
+
+	private static void endFrame(ByteBuffer out, int start) {
+		out.putInt(start, out.position() - start - 4);
+	}
+
+	/**
+	 * Applies a whole frame, length included.
+	 */
+	public void apply(ByteBuffer frame) {
+		frame.getInt();
+		byte kind = frame.get();
+		long frameSequence = frame.getLong();
+
+		if (kind == CARDS) {
+			int firstId = frame.getShort();
+			int count = frame.getShort();
+			for (int id = firstId; id < firstId + count; id++) {
+				Card card = BinaryCodec.getCard(frame);
+				if (id == cards.size()) {
+					cards.add(card);
+				}
+			}
+			return;
+		}
+
+		if (kind == KEYFRAME) {
+			clear();
+		} else if (kind != DELTA) {
+			throw new IllegalArgumentException("Unknown frame kind " + kind);
+		}
+		sequence = frameSequence;
+
+		roundCounter = frame.get();
+		currentSeat = frame.get();
+		passedMask = frame.get();
+		for (int seat = 0; seat < SEATS; seat++) {
+			victories[seat] = frame.get();
+			handSizes[seat] = frame.get() & 0xff;
+		}
+
+		specials.size = frame.getShort();
+		for (int i = frame.getShort(); i > 0; i--) {
+			specials.add(frame.getShort(), 0);
+		}
+
+		for (int changed = frame.get(); changed > 0; changed--) {
+			int index = frame.get();
+			Line row = rows[index / Game.ROW_COUNT][index % Game.ROW_COUNT];
+			row.size = frame.getShort();
+			for (int i = frame.getShort(); i > 0; i--) {
+				row.values[frame.getShort()] = frame.getInt();
+			}
+			for (int i = frame.getShort(); i > 0; i--) {
+				row.add(frame.getShort(), frame.getInt());
+			}
+		}
+	}
+
+	private String cardName(int id) {
+		return id < cards.size() ? cards.get(id)
+				.getName() : "#" + id;
+	}
+
+	/**
+	 * @return the view as text, one line per row, from the first row of the first seat on
+	 */
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder();
+		text.append("round ")
+				.append(roundCounter + 1)
+				.append(", turn of seat ")
+				.append(currentSeat)
+				.append('\n');
+		text.append("specials:");
+		for (int i = 0; i < specials.size; i++) {
+			text.append(' ')
+					.append(cardName(specials.ids[i]));
+		}
+		text.append('\n');
+		for (int seat = 0; seat < SEATS; seat++) {
+			text.append("seat ")
+					.append(seat)
+					.append(": ")
+					.append(victories[seat])
+					.append(" victories <")
+					.append(handSizes[seat])
+					.append(">")
+					.append(hasPassed(seat) ? " passed" : "")
+					.append(" ( ")
+					.append(getScore(seat))
+					.append(" )\n");
+			for (int r = 0; r < Game.ROW_COUNT; r++) {
+				Line row = rows[seat][r];
+				text.append(' ')
+						.append(r + 1)
+						.append(" |");
+				for (int i = 0; i < row.size; i++) {
+					text.append(' ')
+							.append(cardName(row.ids[i]))
+							.append('(')
+							.append(row.values[i])
+							.append(')');
+				}
+				text.append('\n');
+			}
+		}
+		return text.toString();
+	}
+}
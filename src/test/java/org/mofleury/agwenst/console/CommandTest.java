@@ -0,0 +1,53 @@
+package org.mofleury.agwenst.console;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mofleury.agwenst.engine.Game;
+import org.mofleury.agwenst.engine.GameTest;
+
+public class CommandTest {
+
+	private final BufferOutput out = new BufferOutput();
+	private final ConsoleUI ui = new ConsoleUI(out, 64);
+	private Game game;
+
+	@Before
+	public void startGame() {
+		game = GameTest.newGame(1);
+		ui.start(game);
+		out.take();
+	}
+
+	@Test
+	public void dispatchesCommandsWithTheirArguments() {
+		assertTrue(Command.dispatch(ui, "hand"));
+		ui.getOut()
+				.flush();
+		assertTrue(out.take()
+				.contains("\n1 - "));
+
+		assertTrue(Command.dispatch(ui, "  play \t 1 "));
+		assertEquals(1, game.getHistorySize());
+		assertTrue(Command.dispatch(ui, "pass"));
+		assertEquals(2, game.getHistorySize());
+	}
+
+	@Test
+	public void rejectsUnknownCommandsAndWrongArgumentCounts() {
+		assertFalse(Command.dispatch(ui, ""));
+		assertFalse(Command.dispatch(ui, "  "));
+		assertFalse(Command.dispatch(ui, "dance"));
+		assertFalse(Command.dispatch(ui, "play"));
+		assertFalse(Command.dispatch(ui, "play 1 2"));
+		assertFalse(Command.dispatch(ui, "hand 2"));
+
+		ui.getOut()
+				.flush();
+		assertTrue(out.isEmpty());
+		assertEquals(0, game.getHistorySize());
+	}
+}
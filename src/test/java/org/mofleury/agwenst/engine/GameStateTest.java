@@ -0,0 +1,154 @@
+package org.mofleury.agwenst.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.mofleury.agwenst.domain.still.Card;
+import org.mofleury.agwenst.domain.still.CardType;
+
+public class GameStateTest {
+
+	@Test
+	public void everyVersionStaysAsTheGameWasAndCanBeBranchedFrom() {
+		Random rand = new Random(5);
+		for (long seed = 0; seed < 30; seed++) {
+			Game game = GameTest.newGame(seed);
+			assertNull(game.getState());
+			game.setStatePublished(true);
+
+			List<GameState> versions = new ArrayList<>();
+			List<String> descriptions = new ArrayList<>();
+			List<Long> hashes = new ArrayList<>();
+			while (!game.gameOver()) {
+				versions.add(game.getState());
+				descriptions.add(GameTest.describe(game));
+				hashes.add(game.getHash());
+				GameTest.playRandomMove(game, rand);
+			}
+			game.undo();
+			game.undo();
+
+			for (int i = 0; i < versions.size(); i++) {
+				GameState state = versions.get(i);
+				assertEquals(i, state.getVersion());
+				assertEquals(hashes.get(i)
+						.longValue(), state.getHash());
+				Game branch = Game.branch(state);
+				assertEquals(descriptions.get(i), GameTest.describe(branch));
+				assertEquals(state.getHash(), branch.getHash());
+				assertSame(state, branch.getState());
+			}
+			assertEquals(hashes.get(hashes.size() - 2)
+					.longValue(), game.getState()
+							.getHash());
+		}
+	}
+
+	@Test
+	public void aMoveOnlyCopiesWhatItChanges() {
+		Game game = GameTest.newGame(2);
+		game.setStatePublished(true);
+		GameState before = game.getState();
+		int seat = before.getCurrentSeat();
+		Card unit = null;
+		for (Card c : game.getHand(seat)
+				.getCards()) {
+			if (c.getType() == CardType.UNIT) {
+				unit = c;
+			}
+		}
+		game.playCard(unit);
+		GameState after = game.getState();
+
+		assertNotSame(before.getHand(seat), after.getHand(seat));
+		assertSame(before.getHand(1 - seat), after.getHand(1 - seat));
+		assertSame(before.getDeck(seat), after.getDeck(seat));
+		for (int s = 0; s < 2; s++) {
+			for (int r = 0; r < Game.ROW_COUNT; r++) {
+				if (s == seat && r == unit.getTargetRow() - 1) {
+					assertEquals(1, after.getRow(s, r)
+							.getCardCount());
+					assertEquals(0, before.getRow(s, r)
+							.getCardCount());
+				} else {
+					assertSame(before.getRow(s, r), after.getRow(s, r));
+				}
+			}
+		}
+
+		game.pass();
+		assertSame(after.getRow(seat, unit.getTargetRow() - 1), game.getState()
+				.getRow(seat, unit.getTargetRow() - 1));
+		assertSame(after.getHand(seat), game.getState()
+				.getHand(seat));
+	}
+
+	@Test
+	public void readersSeeConsistentVersionsWhileTheGameGoesOn() throws InterruptedException {
+		Game game = GameTest.newGame(0);
+		game.setStatePublished(true);
+		AtomicReference<Game> current = new AtomicReference<>(game);
+		AtomicReference<String> failure = new AtomicReference<>();
+
+		Thread reader = new Thread(() -> {
+			Game read = null;
+			long lastVersion = -1;
+			for (Game g = current.get(); g != null; g = current.get()) {
+				if (g != read) {
+					read = g;
+					lastVersion = -1;
+				}
+				GameState state = g.getState();
+				for (int seat = 0; seat < 2; seat++) {
+					int score = 0;
+					for (int r = 0; r < Game.ROW_COUNT; r++) {
+						GameState.RowState row = state.getRow(seat, r);
+						int rowScore = 0;
+						for (int i = 0; i < row.getCardCount(); i++) {
+							rowScore += row.getValue(i);
+						}
+						if (rowScore != row.getScore()) {
+							failure.set("row score " + row.getScore() + " for values summing to " + rowScore);
+						}
+						score += rowScore;
+					}
+					if (score != state.getScore(seat)) {
+						failure.set("score " + state.getScore(seat) + " for rows summing to " + score);
+					}
+				}
+				if (state.getVersion() < lastVersion) {
+					failure.set("version " + state.getVersion() + " read after " + lastVersion);
+				}
+				lastVersion = state.getVersion();
+			}
+		});
+		reader.start();
+
+		Random rand = new Random(1);
+		for (long seed = 0; seed < 200; seed++) {
+			if (seed > 0) {
+				game = GameTest.newGame(seed);
+				game.setStatePublished(true);
+				current.set(game);
+			}
+			while (!game.gameOver()) {
+				GameTest.playRandomMove(game, rand);
+			}
+		}
+		current.set(null);
+		reader.join();
+
+		assertNull(failure.get());
+		assertTrue(game.getState()
+				.gameOver());
+	}
+}
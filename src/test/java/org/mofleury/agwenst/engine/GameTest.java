@@ -0,0 +1,239 @@
+package org.mofleury.agwenst.engine;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import org.mofleury.agwenst.DeckBuilder;
+import org.mofleury.agwenst.domain.live.EngagedCard;
+import org.mofleury.agwenst.domain.live.Hand;
+import org.mofleury.agwenst.domain.still.Card;
+import org.mofleury.agwenst.domain.still.CardCatalog;
+import org.mofleury.agwenst.domain.still.InitialDeck;
+import org.mofleury.agwenst.domain.still.Player;
+import org.mofleury.agwenst.metrics.EngineMetrics;
+
+public class GameTest {
+
+	@Test
+	public void undoRevertsEveryMoveExactly() {
+		Random rand = new Random(3);
+		for (long seed = 0; seed < 50; seed++) {
+			Game game = newGame(seed);
+			List<String> states = new ArrayList<>();
+			List<Long> hashes = new ArrayList<>();
+			while (!game.gameOver()) {
+				states.add(describe(game));
+				hashes.add(game.getHash());
+				playRandomMove(game, rand);
+			}
+
+			for (int i = states.size() - 1; i >= 0; i--) {
+				game.undo();
+				assertEquals(states.get(i), describe(game));
+				assertEquals(hashes.get(i)
+						.longValue(), game.getHash());
+			}
+			assertFalse(game.undo());
+		}
+	}
+
+	@Test
+	public void transposedMovesReachTheSameHash() {
+		for (long seed = 0; seed < 50; seed++) {
+			Game game = newGame(seed);
+			Game transposed = game.copy();
+			List<Card> hand = game.getHand(game.getRound()
+					.getCurrentSeat())
+					.getCards();
+			Card first = hand.get(0);
+			Card third = hand.get(1);
+
+			game.playCard(first);
+			Card second = game.getHand(game.getRound()
+					.getCurrentSeat())
+					.getCards()
+					.get(0);
+			game.playCard(second);
+			game.playCard(third);
+
+			transposed.playCard(third);
+			transposed.playCard(second);
+			transposed.playCard(first);
+
+			assertEquals(describeUnordered(game), describeUnordered(transposed));
+			assertEquals(game.getHash(), transposed.getHash());
+			assertNotEquals(game.getHash(), newGame(seed).getHash());
+		}
+	}
+
+	@Test
+	public void generatedMovesAreExactlyTheLegalOnes() {
+		Random rand = new Random(8);
+		int[] moves = new int[CardCatalog.getInstance()
+				.size() + 1];
+		for (long seed = 0; seed < 50; seed++) {
+			Game game = newGame(seed);
+			while (!game.gameOver()) {
+				Hand hand = game.getHand(game.getRound()
+						.getCurrentSeat());
+				int count = game.generateMoves(moves);
+				assertEquals(hand.distinctCount() + 1, count);
+				assertEquals(Game.PASS, moves[count - 1]);
+				for (int id = 0; id < CardCatalog.getInstance()
+						.size(); id++) {
+					assertEquals(hand.contains(id), game.isLegal(Game.cardMove(id)));
+				}
+
+				long hash = game.getHash();
+				assertFalse(game.applyMove(-3));
+				assertEquals(hash, game.getHash());
+
+				assertTrue(game.applyMove(moves[rand.nextInt(count)]));
+			}
+			assertEquals(0, game.generateMoves(moves));
+			assertFalse(game.isLegal(Game.PASS));
+		}
+	}
+
+	@Test
+	public void metricsOnlyCountTheMovesKeptInAttachedGames() {
+		EngineMetrics metrics = new EngineMetrics();
+		Random rand = new Random(4);
+		Game game = newGame(6);
+		game.setMetrics(metrics);
+		Game copy = game.copy();
+
+		int cards = 0;
+		int passes = 0;
+		while (!game.gameOver()) {
+			int before = game.getHand(game.getRound()
+					.getCurrentSeat())
+					.size();
+			int seat = game.getRound()
+					.getCurrentSeat();
+			playRandomMove(game, rand);
+			if (game.getHand(seat)
+					.size() < before) {
+				cards++;
+			} else {
+				passes++;
+			}
+		}
+		while (!copy.gameOver()) {
+			playRandomMove(copy, rand);
+		}
+		assertEquals(1, metrics.getGamesStarted());
+		assertEquals(1, metrics.getGamesFinished());
+		assertEquals(cards, metrics.getCardsPlayed());
+		assertEquals(passes, metrics.getPasses());
+		assertEquals(game.getRoundCounter(), metrics.getRounds());
+
+		while (game.undo()) {
+		}
+		assertEquals(0, metrics.getGamesFinished());
+		assertEquals(0, metrics.getCardsPlayed());
+		assertEquals(0, metrics.getPasses());
+		assertEquals(0, metrics.getRounds());
+	}
+
+	@Test
+	public void gameRandomFollowsJavaUtilRandom() {
+		Random reference = new Random(17);
+		GameRandom random = new GameRandom(17);
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(reference.nextInt(100), random.nextInt(100));
+		}
+		GameRandom restored = GameRandom.fromState(random.getState());
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(random.nextLong(), restored.nextLong());
+		}
+	}
+
+	private static String describeUnordered(Game game) {
+		List<String> lines = new ArrayList<>(asList(describe(game).split("[\\n ,\\[\\]]+")));
+		Collections.sort(lines);
+		return lines.toString();
+	}
+
+	public static Game newGame(long seed) {
+		Player jack = new Player("Jack");
+		Player johnes = new Player("Johnes");
+		InitialDeck deck = new DeckBuilder().balancedDeck();
+		Map<Player, InitialDeck> decks = new HashMap<>();
+		decks.put(jack, deck);
+		decks.put(johnes, deck);
+		return new Game(seed, asList(jack, johnes), decks);
+	}
+
+	static void playRandomMove(Game game, Random rand) {
+		List<Card> hand = game.getHand(game.getRound()
+				.getCurrentSeat())
+				.getCards();
+		if (hand.isEmpty() || rand.nextInt(10) == 0) {
+			game.pass();
+		} else {
+			game.playCard(hand.get(rand.nextInt(hand.size())));
+		}
+	}
+
+	private static String handCounts(Hand hand) {
+		StringBuilder sb = new StringBuilder();
+		for (int id = 0; id < CardCatalog.getInstance()
+				.size(); id++) {
+			sb.append(hand.count(id))
+					.append(',');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * full textual description of the game state, used to compare states
+	 */
+	static String describe(Game game) {
+		Round round = game.getRound();
+		StringBuilder sb = new StringBuilder();
+		sb.append(game.getRoundCounter())
+				.append(' ')
+				.append(round.getCurrentSeat());
+		for (int seat = 0; seat < 2; seat++) {
+			sb.append("\nseat ")
+					.append(seat)
+					.append(" victories ")
+					.append(game.getVictories(seat))
+					.append(" passed ")
+					.append(round.hasPassed(seat))
+					.append(" score ")
+					.append(round.getScore(seat))
+					.append(" hand ")
+					.append(handCounts(game.getHand(seat)));
+			for (int r = 0; r < Game.ROW_COUNT; r++) {
+				sb.append("\n row ")
+						.append(r)
+						.append(' ')
+						.append(round.getScore(seat, r));
+				for (EngagedCard c : round.getRow(seat, r)
+						.getCards()) {
+					sb.append(' ')
+							.append(c.getCard()
+									.getName())
+							.append('=')
+							.append(c.getCurrentValue());
+				}
+			}
+		}
+		sb.append("\nspecials ")
+				.append(round.getSpecialCards());
+		return sb.toString();
+	}
+}
@@ -0,0 +1,141 @@
+package org.mofleury.agwenst.engine;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+import org.junit.Test;
+import org.mofleury.agwenst.DeckBuilder;
+import org.mofleury.agwenst.domain.live.EngagedCard;
+import org.mofleury.agwenst.domain.live.Row;
+import org.mofleury.agwenst.domain.still.Card;
+import org.mofleury.agwenst.domain.still.CardCatalog;
+import org.mofleury.agwenst.domain.still.CardType;
+import org.mofleury.agwenst.domain.still.Effect;
+import org.mofleury.agwenst.domain.still.Player;
+
+public class RoundTest {
+
+	private final Player jack = new Player("Jack");
+	private final Player johnes = new Player("Johnes");
+
+	@Test
+	public void incrementalStrengthsMatchFullRecomputation() {
+		CardCatalog catalog = CardCatalog.getInstance();
+		List<Card> pool = new ArrayList<>(new DeckBuilder().balancedDeck()
+				.getCards());
+		pool.addAll(new DeckBuilder().balancedDeck()
+				.getCards());
+		pool.add(catalog.card(CardType.SPECIAL, "plain2", 0, 2, Optional.empty()));
+		pool.add(catalog.card(CardType.SPECIAL, "offboard", 0, Game.ROW_COUNT + 1, Optional.of(Effect.SAP)));
+
+		Random rand = new Random(42);
+		for (int g = 0; g < 200; g++) {
+			Round round = new Round(asList(jack, johnes), jack);
+			List<Card> cards = new ArrayList<>(pool);
+			List<Card> played = new ArrayList<>();
+			List<Integer> seats = new ArrayList<>();
+			for (int i = 0; i < 30; i++) {
+				if (!played.isEmpty() && rand.nextInt(4) == 0) {
+					Card card = played.remove(played.size() - 1);
+					round.unplayCard(card, seats.remove(seats.size() - 1));
+					cards.add(card);
+				} else {
+					Card card = cards.remove(rand.nextInt(cards.size()));
+					seats.add(round.getCurrentSeat());
+					played.add(card);
+					round.playCard(card);
+					round.swapPlayerIfPossible();
+				}
+				assertEquals(recomputedValues(round), currentValues(round));
+				assertScoresMatchBoard(round);
+			}
+		}
+	}
+
+	@Test
+	public void rowModifierJoinsTheRowEffects() {
+		CardCatalog catalog = CardCatalog.getInstance();
+		Card sap = catalog.card(CardType.SPECIAL, "s2", 0, 2, Optional.of(Effect.SAP));
+		Round round = new Round(asList(jack, johnes), jack);
+		round.playCard(catalog.card(CardType.UNIT, "c5", 5, 2, Optional.empty()));
+		round.playCard(catalog.card(CardType.UNIT, "c3", 3, 2, Optional.empty()));
+		assertEquals(8, round.getScore(0, 1));
+
+		round.setModifier(0, 1, sap);
+		assertEquals(2, round.getScore(0, 1));
+		assertEquals(2, round.getScore(0));
+		long modifiedHash = round.getCardsHash();
+
+		round.adjustCardStrengths();
+		assertEquals(2, round.getScore(0));
+		assertScoresMatchBoard(round);
+
+		round.setModifier(0, 1, null);
+		assertEquals(8, round.getScore(0));
+		assertNotEquals(modifiedHash, round.getCardsHash());
+	}
+
+	private void assertScoresMatchBoard(Round round) {
+		round.getRows()
+				.forEach((p, rows) -> {
+					int total = 0;
+					for (Map.Entry<Integer, Row> e : rows.entrySet()) {
+						int rowTotal = e.getValue()
+								.getCards()
+								.stream()
+								.mapToInt(EngagedCard::getCurrentValue)
+								.sum();
+						assertEquals(rowTotal, round.getScore(round.seatOf(p), e.getKey() - 1));
+						total += rowTotal;
+					}
+					assertEquals(total, round.getScore(p));
+				});
+	}
+
+	/**
+	 * The original full board recomputation: every card starts from its base value, then each special card
+	 * in priority order applies its effect to the cards of its target row.
+	 */
+	private List<Integer> recomputedValues(Round round) {
+		List<Card> specials = new ArrayList<>(round.getSpecialCards());
+		specials.sort(Comparator.comparing(c -> c.getEffect()
+				.map(Effect::getPriority)
+				.orElse(0)));
+
+		List<Integer> values = new ArrayList<>();
+		round.getRows()
+				.forEach((p, rows) -> rows.forEach((rid, row) -> row.getCards()
+						.forEach(c -> {
+							int value = c.getCard()
+									.getValue();
+							for (Card spc : specials) {
+								if (spc.getTargetRow() == rid && spc.getEffect()
+										.isPresent()) {
+									value = spc.getEffect()
+											.get()
+											.apply(value);
+								}
+							}
+							values.add(value);
+						})));
+		return values;
+	}
+
+	private List<Integer> currentValues(Round round) {
+		List<Integer> values = new ArrayList<>();
+		round.getRows()
+				.forEach((p, rows) -> rows.forEach((rid, row) -> row.getCards()
+						.stream()
+						.map(EngagedCard::getCurrentValue)
+						.forEach(values::add)));
+		return values;
+	}
+}
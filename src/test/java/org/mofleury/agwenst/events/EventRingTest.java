@@ -0,0 +1,142 @@
+package org.mofleury.agwenst.events;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import org.mofleury.agwenst.DeckBuilder;
+import org.mofleury.agwenst.domain.still.InitialDeck;
+import org.mofleury.agwenst.domain.still.Player;
+import org.mofleury.agwenst.engine.Game;
+import org.mofleury.agwenst.events.GameEvent.Type;
+import org.mofleury.agwenst.simulation.RandomPolicy;
+
+public class EventRingTest {
+
+	@Test
+	public void gameEventsDescribeTheMovesInOrder() {
+		Player jack = new Player("Jack");
+		Player johnes = new Player("Johnes");
+		InitialDeck deck = new DeckBuilder().balancedDeck();
+		Map<Player, InitialDeck> decks = new HashMap<>();
+		decks.put(jack, deck);
+		decks.put(johnes, deck);
+		Game game = new Game(5, asList(jack, johnes), decks);
+
+		EventRing ring = new EventRing(1024);
+		game.setEvents(ring);
+		List<Type> types = new ArrayList<>();
+		List<Integer> cards = new ArrayList<>();
+		EventConsumer consumer = new EventConsumer(ring, e -> {
+			types.add(e.getType());
+			if (e.getType() == Type.CARD_PLAYED) {
+				cards.add(e.getCardId());
+			}
+			if (e.getType() == Type.GAME_OVER) {
+				assertEquals(game.getWinnerSeat(), e.getSeat());
+			}
+		});
+
+		List<Integer> moves = new ArrayList<>();
+		RandomPolicy policy = new RandomPolicy();
+		Random rand = new Random(5);
+		while (!game.gameOver()) {
+			int move = policy.chooseMove(game, rand);
+			moves.add(move);
+			game.applyMove(move);
+		}
+		consumer.poll();
+
+		List<Integer> played = new ArrayList<>();
+		for (int move : moves) {
+			if (move != Game.PASS) {
+				played.add(Game.moveCardId(move));
+			}
+		}
+		assertEquals(played, cards);
+		assertEquals(Type.ROUND_ENDED, types.get(types.size() - 2));
+		assertEquals(Type.GAME_OVER, types.get(types.size() - 1));
+		assertEquals(game.getRoundCounter(), types.stream()
+				.filter(Type.ROUND_ENDED::equals)
+				.count());
+		assertEquals(0, consumer.getLostCount());
+	}
+
+	@Test
+	public void slowConsumersSkipOverwrittenEvents() {
+		EventRing ring = new EventRing(8);
+		List<Long> sequences = new ArrayList<>();
+		long[] lost = new long[1];
+		EventConsumer consumer = new EventConsumer(ring, new GameEventHandler() {
+			@Override
+			public void onEvent(GameEvent event) {
+				sequences.add(event.getSequence());
+				assertEquals(event.getSequence(), event.getScore(0));
+				assertEquals(-event.getSequence(), event.getScore(1));
+			}
+
+			@Override
+			public void eventsLost(long count) {
+				lost[0] += count;
+			}
+		});
+
+		for (int i = 0; i < 20; i++) {
+			ring.publish(Type.PASSED, 1, -1, -1, 0, i, -i);
+		}
+		assertEquals(8, consumer.poll());
+		assertEquals(12, lost[0]);
+		assertEquals(12, consumer.getLostCount());
+		assertEquals(12, sequences.get(0)
+				.longValue());
+		assertEquals(19, sequences.get(7)
+				.longValue());
+	}
+
+	@Test
+	public void writtenEventsStayHiddenUntilCommitted() {
+		EventRing ring = new EventRing(8);
+		List<Type> types = new ArrayList<>();
+		EventConsumer consumer = new EventConsumer(ring, e -> types.add(e.getType()));
+
+		ring.write(Type.CARD_PLAYED, 0, 3, -1, 0, 5, 0);
+		ring.write(Type.OUT_OF_CARDS, 0, -1, -1, 0, 5, 0);
+		assertEquals(0, consumer.poll());
+		ring.commit();
+		assertEquals(2, consumer.poll());
+		assertEquals(asList(Type.CARD_PLAYED, Type.OUT_OF_CARDS), types);
+	}
+
+	@Test
+	public void concurrentConsumerSeesConsistentEvents() throws Exception {
+		EventRing ring = new EventRing(64);
+		long[] last = { -1 };
+		long[] handled = new long[1];
+		boolean[] consistent = { true };
+		EventConsumer consumer = new EventConsumer(ring, e -> {
+			consistent[0] &= e.getSequence() > last[0] && e.getScore(0) == (int) e.getSequence()
+					&& e.getScore(1) == e.getSeat() * 1000 && e.getCardId() == e.getScore(0) % 500;
+			last[0] = e.getSequence();
+			handled[0]++;
+		});
+		Thread thread = consumer.start("consumer");
+
+		int count = 200_000;
+		for (int i = 0; i < count; i++) {
+			ring.publish(Type.CARD_PLAYED, i & 1, i % 500, -1, 0, i, (i & 1) * 1000);
+		}
+		consumer.close();
+		thread.join();
+
+		assertTrue(consistent[0]);
+		assertEquals(count - 1, last[0]);
+		assertEquals(count, handled[0] + consumer.getLostCount());
+	}
+}
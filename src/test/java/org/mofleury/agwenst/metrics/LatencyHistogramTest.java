@@ -0,0 +1,29 @@
+package org.mofleury.agwenst.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+	@Test
+	public void percentilesAreBoundedByTheirBucket() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getPercentile(0.5));
+
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(i);
+		}
+
+		assertEquals(1000, histogram.getCount());
+		assertEquals(1000, histogram.getMax());
+		long p50 = histogram.getPercentile(0.5);
+		assertTrue(p50 >= 500 && p50 < 1024);
+		assertEquals(1000, histogram.getPercentile(0.99));
+		assertEquals(1, histogram.getPercentile(0));
+
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+	}
+}
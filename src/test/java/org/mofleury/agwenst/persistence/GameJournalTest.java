@@ -0,0 +1,109 @@
+package org.mofleury.agwenst.persistence;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import org.mofleury.agwenst.DeckBuilder;
+import org.mofleury.agwenst.domain.still.InitialDeck;
+import org.mofleury.agwenst.domain.still.Player;
+import org.mofleury.agwenst.engine.Game;
+import org.mofleury.agwenst.events.EventConsumer;
+import org.mofleury.agwenst.events.EventRing;
+import org.mofleury.agwenst.simulation.RandomPolicy;
+
+public class GameJournalTest {
+
+	private final List<Player> players = asList(new Player("Jack"), new Player("Johnes"));
+
+	@Test
+	public void replayRebuildsEveryRecordedPosition() throws IOException {
+		Map<Player, InitialDeck> decks = new HashMap<>();
+		decks.put(players.get(0), new DeckBuilder().balancedDeck());
+		decks.put(players.get(1), new DeckBuilder().simpleDeck(1, 12));
+
+		RandomPolicy policy = new RandomPolicy();
+		Random random = new Random(5);
+		Path file = Files.createTempFile("agwenst", ".journal");
+		try {
+			for (long seed = 0; seed < 20; seed++) {
+				Game game = new Game(seed, players, decks);
+				EventRing events = new EventRing(1 << 12);
+				game.setEvents(events);
+				List<Long> hashes = new ArrayList<>();
+				try (GameJournal journal = GameJournal.create(file, seed, players, decks);
+						EventConsumer recording = new EventConsumer(events, journal)) {
+					recording.start("journal");
+					while (!game.gameOver()) {
+						if (game.getHistorySize() > 0 && random.nextInt(8) == 0) {
+							game.undo();
+						} else {
+							game.applyMove(policy.chooseMove(game, random));
+						}
+						hashes.add(game.getHash());
+					}
+				}
+
+				try (JournalReplay replay = JournalReplay.open(file)) {
+					assertEquals(hashes.size(), replay.getMoveCount());
+					assertTrue(replay.isComplete());
+					Game replayed = replay.newGame();
+					for (int move = 0; move < hashes.size(); move++) {
+						replay.replay(replayed, move, move + 1);
+						assertEquals(hashes.get(move)
+								.longValue(), replayed.getHash());
+					}
+					assertEquals(game.getHash(), replay.gameAt(hashes.size())
+							.getHash());
+				}
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void lostEventsEndTheJournalWithAnIncompleteRecord() throws IOException {
+		Map<Player, InitialDeck> decks = new HashMap<>();
+		decks.put(players.get(0), new DeckBuilder().balancedDeck());
+		decks.put(players.get(1), new DeckBuilder().balancedDeck());
+
+		Path file = Files.createTempFile("agwenst", ".journal");
+		try {
+			Game game = new Game(3, players, decks);
+			EventRing events = new EventRing(4);
+			game.setEvents(events);
+			RandomPolicy policy = new RandomPolicy();
+			Random random = new Random(3);
+			try (GameJournal journal = GameJournal.create(file, 3, players, decks)) {
+				EventConsumer recording = new EventConsumer(events, journal);
+				game.applyMove(policy.chooseMove(game, random));
+				recording.poll();
+				for (int move = 0; move < 6; move++) {
+					game.applyMove(policy.chooseMove(game, random));
+				}
+				recording.poll();
+				assertTrue(recording.getLostCount() > 0);
+			}
+
+			try (JournalReplay replay = JournalReplay.open(file)) {
+				assertFalse(replay.isComplete());
+				assertEquals(1, replay.getMoveCount());
+				replay.gameAt(1);
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package org.mofleury.agwenst.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.mofleury.agwenst.engine.GameTest.newGame;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.Test;
+import org.mofleury.agwenst.engine.Game;
+import org.mofleury.agwenst.simulation.RandomPolicy;
+
+public class GameSnapshotTest {
+
+	private final RandomPolicy policy = new RandomPolicy();
+
+	private void playMove(Game game, Random random) {
+		game.applyMove(policy.chooseMove(game, random));
+	}
+
+	@Test
+	public void restoredGamesGoOnLikeTheOriginal() throws IOException {
+		for (long seed = 0; seed < 50; seed++) {
+			Game game = newGame(seed);
+			Random random = new Random(seed);
+			int moves = random.nextInt(20);
+			for (int i = 0; i < moves && !game.gameOver(); i++) {
+				playMove(game, random);
+			}
+
+			Game restored = GameSnapshot.decode(GameSnapshot.encode(game));
+			assertEquals(game.getHash(), restored.getHash());
+			assertEquals(game.getRand()
+					.getState(),
+					restored.getRand()
+							.getState());
+
+			long continuation = random.nextLong();
+			Random original = new Random(continuation);
+			Random copy = new Random(continuation);
+			while (!game.gameOver()) {
+				playMove(game, original);
+				playMove(restored, copy);
+				assertEquals(game.getHash(), restored.getHash());
+				assertEquals(game.getRound()
+						.computeScores()
+						.toString(),
+						restored.getRound()
+								.computeScores()
+								.toString());
+			}
+			assertEquals(game.getWinnerSeat(), restored.getWinnerSeat());
+		}
+	}
+
+	@Test
+	public void snapshotsRoundTripThroughFiles() throws IOException {
+		Game game = newGame(11);
+		Random random = new Random(11);
+		for (int i = 0; i < 7; i++) {
+			playMove(game, random);
+		}
+
+		Path file = Files.createTempFile("agwenst", ".snapshot");
+		try {
+			GameSnapshot.save(game, file);
+			Game restored = GameSnapshot.load(file);
+			assertEquals(game.getHash(), restored.getHash());
+			assertEquals(game.getRoundCounter(), restored.getRoundCounter());
+		} finally {
+			Files.delete(file);
+		}
+	}
+}
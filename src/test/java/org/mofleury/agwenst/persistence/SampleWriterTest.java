@@ -0,0 +1,72 @@
+package org.mofleury.agwenst.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.mofleury.agwenst.DeckBuilder;
+import org.mofleury.agwenst.domain.still.InitialDeck;
+import org.mofleury.agwenst.simulation.GameOutcome;
+import org.mofleury.agwenst.simulation.GreedyPolicy;
+import org.mofleury.agwenst.simulation.RandomPolicy;
+import org.mofleury.agwenst.simulation.Simulator;
+
+public class SampleWriterTest {
+
+	@Test
+	public void everyDecisionIsWrittenWithItsOutcome() throws IOException {
+		InitialDeck deck = new DeckBuilder().balancedDeck();
+		Simulator simulator = new Simulator(new GreedyPolicy(), new RandomPolicy(), deck, deck, 1);
+
+		List<GameOutcome> outcomes = new ArrayList<>();
+		Path file = Files.createTempFile("agwenst", ".samples");
+		try {
+			try (SampleWriter writer = SampleWriter.create(file, 64)) {
+				for (long seed = 0; seed < 30; seed++) {
+					outcomes.add(simulator.playGame(seed, writer));
+				}
+			}
+
+			try (SampleReader reader = SampleReader.open(file)) {
+				long moves = outcomes.stream()
+						.mapToLong(GameOutcome::getMoves)
+						.sum();
+				assertEquals(moves, reader.getSampleCount());
+				assertTrue(reader.getChunkCount() > 1);
+
+				int game = 0;
+				int gameSamples = 0;
+				for (int chunk = 0; chunk < reader.getChunkCount(); chunk++) {
+					ByteBuffer seeds = reader.column(chunk, SampleColumn.GAME_SEED);
+					ByteBuffer seats = reader.column(chunk, SampleColumn.SEAT);
+					ByteBuffer rounds = reader.column(chunk, SampleColumn.ROUND_OUTCOME);
+					ByteBuffer games = reader.column(chunk, SampleColumn.GAME_OUTCOME);
+					ByteBuffer hands = reader.column(chunk, SampleColumn.HAND_SIZES);
+					for (int i = 0; i < reader.getSampleCount(chunk); i++) {
+						GameOutcome outcome = outcomes.get(game);
+						assertEquals(outcome.getSeed(), seeds.getLong(i * 8));
+						int seat = seats.get(i);
+						int expected = outcome.getWinnerSeat() < 0 ? 0 : outcome.getWinnerSeat() == seat ? 1 : -1;
+						assertEquals(expected, games.get(i));
+						assertEquals(1, Math.abs(rounds.get(i)));
+						assertTrue(hands.get(i * 2) >= 0);
+						if (++gameSamples == outcome.getMoves()) {
+							game++;
+							gameSamples = 0;
+						}
+					}
+				}
+				assertEquals(outcomes.size(), game);
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+}
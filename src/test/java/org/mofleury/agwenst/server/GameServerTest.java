@@ -0,0 +1,73 @@
+package org.mofleury.agwenst.server;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+public class GameServerTest {
+
+	// a unit card of the hand display: index, row, value and name
+	private static final Pattern UNIT_LINE = Pattern.compile("(\\d+) - \\((\\d+), (\\d+)\\) (.+?)( x\\d+)?");
+
+	private static List<String> readResponse(BufferedReader in) throws IOException {
+		List<String> lines = new ArrayList<>();
+		String line;
+		while (!(line = in.readLine()).equals(".")) {
+			lines.add(line);
+		}
+		return lines;
+	}
+
+	@Test
+	public void sessionsPlayIndependentGames() throws IOException {
+		try (GameServer server = new GameServer(0, 2, null);
+				Socket first = new Socket("localhost", server.getPort());
+				Socket second = new Socket("localhost", server.getPort())) {
+
+			BufferedReader in1 = new BufferedReader(
+					new InputStreamReader(first.getInputStream(), StandardCharsets.UTF_8));
+			PrintWriter out1 = new PrintWriter(first.getOutputStream(), true);
+			BufferedReader in2 = new BufferedReader(
+					new InputStreamReader(second.getInputStream(), StandardCharsets.UTF_8));
+			PrintWriter out2 = new PrintWriter(second.getOutputStream(), true);
+
+			assertTrue(readResponse(in1).get(0)
+					.startsWith("Welcome"));
+			assertTrue(readResponse(in2).get(0)
+					.startsWith("Welcome"));
+
+			out1.println("hand");
+			Matcher unit = readResponse(in1).stream()
+					.map(UNIT_LINE::matcher)
+					.filter(Matcher::matches)
+					.findFirst()
+					.get();
+			// nothing is on the board yet to change the value of the card
+			String played = unit.group(4) + "(" + unit.group(3) + ")";
+
+			out1.println("play " + unit.group(1));
+			assertTrue(readResponse(in1).stream()
+					.anyMatch(l -> l.contains(played)));
+
+			out2.println("field");
+			assertTrue(readResponse(in2).stream()
+					.noneMatch(l -> l.contains(played)));
+
+			out1.println("exit");
+			readResponse(in1);
+			assertNull(in1.readLine());
+		}
+	}
+}
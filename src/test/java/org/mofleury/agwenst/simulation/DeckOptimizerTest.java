@@ -0,0 +1,108 @@
+package org.mofleury.agwenst.simulation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.mofleury.agwenst.DeckBuilder;
+import org.mofleury.agwenst.domain.still.Card;
+import org.mofleury.agwenst.domain.still.InitialDeck;
+
+public class DeckOptimizerTest {
+
+	private final InitialDeck reference = new DeckBuilder().balancedDeck();
+	private final List<Card> pool = DeckOptimizer.poolOf(reference);
+
+	private DeckOptimizer newOptimizer() {
+		return new DeckOptimizer(pool, reference.getCards()
+				.size(), 3, reference, new GreedyPolicy(), 200, 2, 3);
+	}
+
+	@Test
+	public void decksKeepTheirSizeAndCopyLimit() throws Exception {
+		try (DeckOptimizer optimizer = newOptimizer()) {
+			optimizer.seed(optimizer.countsOf(reference), 6);
+			for (int g = 0; g < 3; g++) {
+				optimizer.nextGeneration(8);
+			}
+
+			assertEquals(6, optimizer.getPopulation()
+					.size());
+			for (int[] counts : optimizer.getPopulation()) {
+				assertEquals(reference.getCards()
+						.size(),
+						Arrays.stream(counts)
+								.sum());
+				assertTrue(Arrays.stream(counts)
+						.allMatch(c -> c >= 0 && c <= 3));
+			}
+
+			int[] best = optimizer.getPopulation()
+					.get(0);
+			assertSame(optimizer.getEvaluation(best), optimizer.evaluate(best, 0));
+			assertTrue(optimizer.getEvaluation(best)
+					.isComplete());
+		}
+	}
+
+	@Test
+	public void generationsEndWhenNoNewDeckIsWithinReach() throws Exception {
+		// a single deck can be built from two cards with one copy each
+		try (DeckOptimizer optimizer = new DeckOptimizer(pool.subList(0, 2), 2, 1, reference, new GreedyPolicy(), 20,
+				1, 3)) {
+			optimizer.seed(new int[] { 1, 1 }, 1);
+			optimizer.nextGeneration(4);
+
+			assertEquals(1, optimizer.getGeneration());
+			assertArrayEquals(new int[] { 1, 1 }, optimizer.getPopulation()
+					.get(0));
+		}
+	}
+
+	@Test
+	public void abandonedEvaluationsResumeForALowerThreshold() throws Exception {
+		try (DeckOptimizer optimizer = newOptimizer()) {
+			int[] counts = optimizer.countsOf(reference);
+			DeckOptimizer.Evaluation abandoned = optimizer.evaluate(counts, 1.1);
+			assertFalse(abandoned.isComplete());
+			assertSame(abandoned, optimizer.evaluate(counts, 1.1));
+
+			DeckOptimizer.Evaluation resumed = optimizer.evaluate(counts, 0);
+			assertTrue(resumed.isComplete());
+			assertEquals(200, resumed.getGames());
+		}
+	}
+
+	@Test
+	public void checkpointRestoresTheSearch() throws Exception {
+		Path file = Files.createTempFile("agwenst", ".checkpoint");
+		try (DeckOptimizer optimizer = newOptimizer(); DeckOptimizer resumed = newOptimizer()) {
+			optimizer.seed(optimizer.countsOf(reference), 4);
+			optimizer.nextGeneration(4);
+			optimizer.saveCheckpoint(file);
+
+			resumed.loadCheckpoint(file);
+			assertEquals(optimizer.getGeneration(), resumed.getGeneration());
+			for (int i = 0; i < 4; i++) {
+				int[] counts = optimizer.getPopulation()
+						.get(i);
+				assertArrayEquals(counts, resumed.getPopulation()
+						.get(i));
+				assertEquals(optimizer.getEvaluation(counts)
+						.getHalfWins(),
+						resumed.getEvaluation(counts)
+								.getHalfWins());
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+}
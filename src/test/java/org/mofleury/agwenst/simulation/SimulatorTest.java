@@ -0,0 +1,36 @@
+package org.mofleury.agwenst.simulation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.mofleury.agwenst.DeckBuilder;
+import org.mofleury.agwenst.domain.still.InitialDeck;
+
+public class SimulatorTest {
+
+	private final InitialDeck deck = new DeckBuilder().balancedDeck();
+
+	@Test
+	public void gamesAreReproducibleFromTheirSeed() {
+		Simulator simulator = new Simulator(new RandomPolicy(), new RandomPolicy(), deck, deck, 1);
+		for (long i = 0; i < 100; i++) {
+			long seed = Simulator.gameSeed(42, i);
+			GameOutcome first = simulator.playGame(seed);
+			GameOutcome second = simulator.playGame(seed);
+			assertEquals(first.getWinnerSeat(), second.getWinnerSeat());
+			assertEquals(first.getMoves(), second.getMoves());
+		}
+	}
+
+	@Test
+	public void resultDoesNotDependOnParallelism() {
+		SimulationResult sequential = new Simulator(new GreedyPolicy(), new RandomPolicy(), deck, deck, 1).run(7,
+				2000);
+		SimulationResult parallel = new Simulator(new GreedyPolicy(), new RandomPolicy(), deck, deck, 4).run(7, 2000);
+
+		assertEquals(2000, parallel.getGames());
+		assertEquals(sequential.getMoves(), parallel.getMoves());
+		assertArrayEquals(sequential.getWins(), parallel.getWins());
+	}
+}
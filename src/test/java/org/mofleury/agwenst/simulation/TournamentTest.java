@@ -0,0 +1,43 @@
+package org.mofleury.agwenst.simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+import java.util.List;
+
+import org.junit.Test;
+import org.mofleury.agwenst.DeckBuilder;
+import org.mofleury.agwenst.domain.still.InitialDeck;
+import org.mofleury.agwenst.simulation.Tournament.PairingResult;
+import org.mofleury.agwenst.simulation.Tournament.Verdict;
+
+public class TournamentTest {
+
+	private final InitialDeck deck = new DeckBuilder().balancedDeck();
+
+	@Test
+	public void clearMismatchesAreDecidedEarly() throws InterruptedException {
+		Tournament tournament = new Tournament(10_000, 2, 5).add("greedy", new GreedyPolicy(), deck)
+				.add("random", new RandomPolicy(), deck)
+				.add("passive", new RandomPolicy(0.9), deck);
+		StringWriter csv = new StringWriter();
+
+		List<PairingResult> results = tournament.run(csv);
+
+		assertEquals(3, results.size());
+		for (PairingResult r : results) {
+			assertEquals(Verdict.FIRST_STRONGER, r.getVerdict());
+			assertTrue(r.getGames() < 10_000);
+			assertEquals(0, r.getGames() % 2);
+		}
+		assertEquals(4, csv.toString()
+				.split("\n").length);
+
+		double[][] matrix = tournament.scoreMatrix(results);
+		assertEquals(1, matrix[0][1] + matrix[1][0], 1e-9);
+		double[] elo = tournament.eloRatings(results);
+		assertTrue(elo[0] > elo[1] && elo[1] > elo[2]);
+		assertEquals(0, elo[0] + elo[1] + elo[2], 1e-6);
+	}
+}
@@ -0,0 +1,97 @@
+package org.mofleury.agwenst.spectator;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import org.mofleury.agwenst.DeckBuilder;
+import org.mofleury.agwenst.domain.still.InitialDeck;
+import org.mofleury.agwenst.domain.still.Player;
+import org.mofleury.agwenst.engine.Game;
+import org.mofleury.agwenst.events.EventConsumer;
+import org.mofleury.agwenst.events.EventRing;
+import org.mofleury.agwenst.simulation.RandomPolicy;
+
+public class SpectatorHubTest {
+
+	private static String expectedView(Game game, long sequence) {
+		ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+		SpectatorView.writeCards(buffer, sequence, 0);
+		new SpectatorView().writeFrame(buffer, SpectatorView.KEYFRAME, sequence, game.getState());
+		buffer.flip();
+		SpectatorView view = new SpectatorView();
+		view.apply(buffer);
+		view.apply(buffer);
+		return view.toString();
+	}
+
+	@Test
+	public void spectatorsFollowTheGameWhenEverTheyJoin() throws IOException {
+		Player jack = new Player("Jack");
+		Player johnes = new Player("Johnes");
+		InitialDeck deck = new DeckBuilder().balancedDeck();
+		Map<Player, InitialDeck> decks = new HashMap<>();
+		decks.put(jack, deck);
+		decks.put(johnes, deck);
+		Game game = new Game(11, asList(jack, johnes), decks);
+		EventRing events = new EventRing(64);
+		game.setEvents(events);
+		game.setStatePublished(true);
+
+		try (SpectatorHub hub = new SpectatorHub(0);
+				SpectatorClient early = new SpectatorClient("localhost", hub.getPort())) {
+			// polled after each move, so that each move makes its own frame
+			EventConsumer feed = new EventConsumer(events, new SpectatorFeed(game::getState, hub, 8));
+			early.awaitSequence(0);
+			assertEquals(expectedView(game, 0), early.getView()
+					.toString());
+
+			RandomPolicy policy = new RandomPolicy();
+			Random rand = new Random(11);
+			long moves = 0;
+			SpectatorClient late = null;
+			try {
+				while (!game.gameOver()) {
+					game.applyMove(policy.chooseMove(game, rand));
+					feed.poll();
+					moves++;
+					if (moves == 5) {
+						game.undo();
+						feed.poll();
+						moves++;
+						early.awaitSequence(moves);
+						assertEquals(expectedView(game, moves), early.getView()
+								.toString());
+					}
+					if (moves == 13) {
+						late = new SpectatorClient("localhost", hub.getPort());
+					}
+				}
+
+				early.awaitSequence(moves);
+				late.awaitSequence(moves);
+				String expected = expectedView(game, moves);
+				assertEquals(expected, early.getView()
+						.toString());
+				assertEquals(expected, late.getView()
+						.toString());
+				assertEquals(game.getVictories(0), early.getView()
+						.getVictories(0));
+				assertEquals(2, hub.getSpectatorCount());
+				// a delta is a few bytes per changed row, not the whole board
+				assertTrue(early.getBytesRead() < moves * 60 + 2000);
+			} finally {
+				if (late != null) {
+					late.close();
+				}
+			}
+		}
+	}
+}